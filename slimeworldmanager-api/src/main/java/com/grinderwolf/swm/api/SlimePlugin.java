@@ -10,16 +10,26 @@ import com.grinderwolf.swm.api.exceptions.WorldLoadedException;
 import com.grinderwolf.swm.api.exceptions.WorldTooBigException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.api.world.SlimeWorldPool;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Main class of the SWM API. From here, you can load
  * worlds and add them to the server's world list, and
  * also add your own implementations of the {@link SlimeLoader}
  * interface, to load and store worlds from other data sources.
+ *
+ * Most operations have an asynchronous variant, returning a {@link CompletableFuture}
+ * that runs on threads owned by SWM. Data source operations and world decoding have
+ * their own separate thread limits. The futures fail with the same exceptions the
+ * blocking operations throw. Their callbacks aren't guaranteed to run on the main
+ * thread, so generating the worlds they return has to be handed off to the
+ * {@link #getMainThreadExecutor() main thread executor}.
  */
 public interface SlimePlugin {
 
@@ -53,7 +63,9 @@ public interface SlimePlugin {
      *
      * @param loader {@link SlimeLoader} used to retrieve the world.
      * @param worldName Name of the world.
-     * @param readOnly Whether or not read-only mode is enabled.
+     * @param readOnly Whether or not read-only mode is enabled. Read-only worlds
+     *                 are kept in memory, so loading them again doesn't require
+     *                 retrieving them from their data source.
      * @param propertyMap A {@link SlimePropertyMap} object containing all the properties of the world.
      *
      * @return A {@link SlimeWorld}, which is the in-memory representation of the world.
@@ -67,6 +79,30 @@ public interface SlimePlugin {
     SlimeWorld loadWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) throws
             UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException, WorldInUseException;
 
+    /**
+     * Loads a world asynchronously, just like {@link #loadWorld(SlimeLoader, String, boolean, SlimePropertyMap)} does.
+     *
+     * @param loader {@link SlimeLoader} used to retrieve the world.
+     * @param worldName Name of the world.
+     * @param readOnly Whether or not read-only mode is enabled.
+     * @param propertyMap A {@link SlimePropertyMap} object containing all the properties of the world.
+     *
+     * @return A {@link CompletableFuture} completed with the {@link SlimeWorld}.
+     */
+    CompletableFuture<SlimeWorld> loadWorldAsync(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap);
+
+    /**
+     * Removes a world from the in-memory cache of read-only worlds, so the
+     * next time it's loaded in read-only mode it's retrieved from its data
+     * source again. The cache is disabled by default. When it's enabled,
+     * worlds modified or deleted without going through SWM have to be
+     * invalidated, so no outdated copy of them is loaded.
+     *
+     * @param loader {@link SlimeLoader} the world is stored in.
+     * @param worldName Name of the world.
+     */
+    void invalidateTemplate(SlimeLoader loader, String worldName);
+
     /**
      * Creates an empty world and stores it using a specified
      * {@link SlimeLoader}. This world can then be added to
@@ -103,6 +139,19 @@ public interface SlimePlugin {
      */
     SlimeWorld createEmptyWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) throws WorldAlreadyExistsException, IOException;
 
+    /**
+     * Creates an empty world asynchronously, just like
+     * {@link #createEmptyWorld(SlimeLoader, String, boolean, SlimePropertyMap)} does.
+     *
+     * @param loader {@link SlimeLoader} used to store the world.
+     * @param worldName Name of the world.
+     * @param readOnly Whether or not read-only mode is enabled.
+     * @param propertyMap A {@link SlimePropertyMap} object containing all the properties of the world.
+     *
+     * @return A {@link CompletableFuture} completed with the {@link SlimeWorld}.
+     */
+    CompletableFuture<SlimeWorld> createEmptyWorldAsync(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap);
+
     /**
      * Generates a Minecraft World from a {@link SlimeWorld} and
      * adds it to the server's world list.
@@ -111,6 +160,26 @@ public interface SlimePlugin {
      */
     void generateWorld(SlimeWorld world);
 
+    /**
+     * Creates a pool that keeps a number of generated, read-only copies of
+     * a world ready to be claimed. The copies are prepared in the background,
+     * so the pool takes some time to fill up.
+     *
+     * @param loader {@link SlimeLoader} used to retrieve the template world.
+     * @param templateName Name of the template world.
+     * @param propertyMap A {@link SlimePropertyMap} object containing all the properties of the copies.
+     * @param size Amount of worlds to keep ready.
+     * @param idleTimeout Time, in seconds, after which the pool unloads its worlds if none of them
+     *                    has been claimed, or 0 to keep them loaded. The pool fills up again on the
+     *                    next claim.
+     *
+     * @return The {@link SlimeWorldPool}.
+     *
+     * @throws IllegalArgumentException if the size is over the configured limits,
+     *                                  or if there's already a pool for the same world.
+     */
+    SlimeWorldPool createWorldPool(SlimeLoader loader, String templateName, SlimePropertyMap propertyMap, int size, long idleTimeout);
+
     /**
      * Migrates a {@link SlimeWorld} to another datasource.
      *
@@ -125,6 +194,18 @@ public interface SlimePlugin {
      */
     void migrateWorld(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader) throws IOException, WorldInUseException, WorldAlreadyExistsException, UnknownWorldException;
 
+    /**
+     * Migrates a {@link SlimeWorld} to another datasource asynchronously,
+     * just like {@link #migrateWorld(String, SlimeLoader, SlimeLoader)} does.
+     *
+     * @param worldName The name of the world to be migrated.
+     * @param currentLoader The {@link SlimeLoader} of the data source where the world is currently stored in.
+     * @param newLoader The {@link SlimeLoader} of the data source where the world will be moved to.
+     *
+     * @return A {@link CompletableFuture} completed once the world has been migrated.
+     */
+    CompletableFuture<Void> migrateWorldAsync(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader);
+
     /**
      * Returns the {@link SlimeLoader} that is able to
      * read and store worlds from a specified data source.
@@ -159,4 +240,32 @@ public interface SlimePlugin {
      */
     void importWorld(File worldDir, String worldName, SlimeLoader loader) throws WorldAlreadyExistsException,
             InvalidWorldException, WorldLoadedException, WorldTooBigException, IOException;
+
+    /**
+     * Imports a world into the SRF asynchronously, just like
+     * {@link #importWorld(File, String, SlimeLoader)} does.
+     *
+     * @param worldDir The directory where the world is.
+     * @param worldName The name of the world.
+     * @param loader The {@link SlimeLoader} that will be used to store the world.
+     *
+     * @return A {@link CompletableFuture} completed once the world has been imported.
+     */
+    CompletableFuture<Void> importWorldAsync(File worldDir, String worldName, SlimeLoader loader);
+
+    /**
+     * Returns the {@link Executor} data source operations run on. It can be
+     * passed to the asynchronous operations of a {@link SlimeLoader}.
+     *
+     * @return The {@link Executor} data source operations run on.
+     */
+    Executor getLoaderExecutor();
+
+    /**
+     * Returns an {@link Executor} that runs tasks on the main thread, on the next tick.
+     * Worlds loaded asynchronously have to be generated through it.
+     *
+     * @return The main thread {@link Executor}.
+     */
+    Executor getMainThreadExecutor();
 }
@@ -3,13 +3,24 @@ package com.grinderwolf.swm.api.loaders;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * SlimeLoaders are in charge of loading worlds
  * from a data source, and also locking and
  * deleting them.
+ *
+ * Every operation has an asynchronous variant, which by default runs the
+ * blocking one on the given {@link Executor}. Loaders backed by a client
+ * that's asynchronous on its own can override them. The returned futures
+ * fail with the same exceptions the blocking operations throw.
  */
 public interface SlimeLoader {
 
@@ -27,6 +38,25 @@ public interface SlimeLoader {
      */
     byte[] loadWorld(String worldName, boolean readOnly) throws UnknownWorldException, WorldInUseException, IOException;
 
+    /**
+     * Load a world's data file, just like {@link #loadWorld(String, boolean)} does,
+     * but without requiring it to be copied into a byte array. Loaders that can read
+     * the data file in place, like by mapping it into memory, should override this.
+     *
+     * The returned buffer may be read-only, and must not be modified. It's only
+     * read while the world is being deserialized.
+     *
+     * @param worldName The name of the world.
+     * @param readOnly  If false, a {@link WorldInUseException} should be thrown when the world is locked.
+     * @return The world's data file, between the buffer's position and limit.
+     * @throws UnknownWorldException if the world cannot be found.
+     * @throws WorldInUseException   if the world is locked
+     * @throws IOException           if the world could not be obtained.
+     */
+    default ByteBuffer loadWorldBuffer(String worldName, boolean readOnly) throws UnknownWorldException, WorldInUseException, IOException {
+        return ByteBuffer.wrap(loadWorld(worldName, readOnly));
+    }
+
     /**
      * Checks whether or not a world exists
      * inside the data source.
@@ -56,6 +86,28 @@ public interface SlimeLoader {
      */
     void saveWorld(String worldName, byte[] serializedWorld, boolean lock) throws IOException;
 
+    /**
+     * Saves the world's data file, letting the given {@link WorldDataWriter}
+     * stream it straight into the data source instead of building the
+     * whole file inside a byte array first. This method will also
+     * lock the world, in case it's not locked already.
+     *
+     * Loaders that can't write the data file as a stream can rely on the
+     * default implementation, which buffers it and then calls
+     * {@link #saveWorld(String, byte[], boolean)}.
+     *
+     * @param worldName The name of the world.
+     * @param writer    The writer that produces the world's data file.
+     * @param lock      Whether or not the world should be relocked.
+     * @throws IOException if the world could not be saved.
+     */
+    default void saveWorld(String worldName, WorldDataWriter writer, boolean lock) throws IOException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        writer.write(outStream);
+
+        saveWorld(worldName, outStream.toByteArray(), lock);
+    }
+
     /**
      * Unlocks a world.
      *
@@ -84,4 +136,132 @@ public interface SlimeLoader {
      */
     void deleteWorld(String worldName) throws UnknownWorldException, IOException;
 
+    /**
+     * Loads a world's data file asynchronously.
+     *
+     * @param worldName The name of the world.
+     * @param readOnly  If false, the future fails with a {@link WorldInUseException} when the world is locked.
+     * @param executor  The executor the blocking operation runs on.
+     * @return A future completed with the world's data file.
+     * @see #loadWorld(String, boolean)
+     */
+    default CompletableFuture<byte[]> loadWorldAsync(String worldName, boolean readOnly, Executor executor) {
+        return supplyAsync(() -> loadWorld(worldName, readOnly), executor);
+    }
+
+    /**
+     * Loads a world's data file asynchronously, without requiring it to be copied into a byte array.
+     *
+     * @param worldName The name of the world.
+     * @param readOnly  If false, the future fails with a {@link WorldInUseException} when the world is locked.
+     * @param executor  The executor the blocking operation runs on.
+     * @return A future completed with the world's data file.
+     * @see #loadWorldBuffer(String, boolean)
+     */
+    default CompletableFuture<ByteBuffer> loadWorldBufferAsync(String worldName, boolean readOnly, Executor executor) {
+        return supplyAsync(() -> loadWorldBuffer(worldName, readOnly), executor);
+    }
+
+    /**
+     * Checks asynchronously whether or not a world exists inside the data source.
+     *
+     * @param worldName The name of the world.
+     * @param executor  The executor the blocking operation runs on.
+     * @return A future completed with whether or not the world exists.
+     * @see #worldExists(String)
+     */
+    default CompletableFuture<Boolean> worldExistsAsync(String worldName, Executor executor) {
+        return supplyAsync(() -> worldExists(worldName), executor);
+    }
+
+    /**
+     * Returns the current saved world names asynchronously.
+     *
+     * @param executor The executor the blocking operation runs on.
+     * @return A future completed with a list containing all the world names.
+     * @see #listWorlds()
+     */
+    default CompletableFuture<List<String>> listWorldsAsync(Executor executor) {
+        return supplyAsync(this::listWorlds, executor);
+    }
+
+    /**
+     * Saves the world's data file asynchronously.
+     *
+     * @param worldName       The name of the world.
+     * @param serializedWorld The world's data file, contained inside a byte array.
+     * @param lock            Whether or not the world should be relocked.
+     * @param executor        The executor the blocking operation runs on.
+     * @return A future completed once the world has been saved.
+     * @see #saveWorld(String, byte[], boolean)
+     */
+    default CompletableFuture<Void> saveWorldAsync(String worldName, byte[] serializedWorld, boolean lock, Executor executor) {
+        return supplyAsync(() -> {
+            saveWorld(worldName, serializedWorld, lock);
+
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Unlocks a world asynchronously.
+     *
+     * @param worldName The name of the world.
+     * @param executor  The executor the blocking operation runs on.
+     * @return A future completed once the world has been unlocked.
+     * @see #unlockWorld(String)
+     */
+    default CompletableFuture<Void> unlockWorldAsync(String worldName, Executor executor) {
+        return supplyAsync(() -> {
+            unlockWorld(worldName);
+
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Checks asynchronously whether or not a world is locked.
+     *
+     * @param worldName The name of the world.
+     * @param executor  The executor the blocking operation runs on.
+     * @return A future completed with whether or not the world is locked.
+     * @see #isWorldLocked(String)
+     */
+    default CompletableFuture<Boolean> isWorldLockedAsync(String worldName, Executor executor) {
+        return supplyAsync(() -> isWorldLocked(worldName), executor);
+    }
+
+    /**
+     * Deletes a world from the data source asynchronously.
+     *
+     * @param worldName name of the world
+     * @param executor  The executor the blocking operation runs on.
+     * @return A future completed once the world has been deleted.
+     * @see #deleteWorld(String)
+     */
+    default CompletableFuture<Void> deleteWorldAsync(String worldName, Executor executor) {
+        return supplyAsync(() -> {
+            deleteWorld(worldName);
+
+            return null;
+        }, executor);
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Callable<T> task, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
 }
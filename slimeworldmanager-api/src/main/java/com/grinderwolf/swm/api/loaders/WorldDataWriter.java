@@ -0,0 +1,21 @@
+package com.grinderwolf.swm.api.loaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a world's data file into the {@link OutputStream}
+ * provided by a {@link SlimeLoader}, so the loader can push the
+ * bytes to its data source as they are produced.
+ */
+@FunctionalInterface
+public interface WorldDataWriter {
+
+    /**
+     * Writes the world's data file.
+     *
+     * @param outStream The stream the world's data file has to be written to.
+     * @throws IOException if the world could not be written.
+     */
+    void write(OutputStream outStream) throws IOException;
+}
@@ -1,6 +1,6 @@
 package com.grinderwolf.swm.api.utils;
 
-import lombok.Getter;
+import java.util.Arrays;
 
 /**
  * Credits to Minikloon for this class.
@@ -9,15 +9,112 @@ import lombok.Getter;
  */
 public class NibbleArray {
 
-    @Getter
-    private final byte[] backing;
+    /** Size, in bytes, of the nibble arrays of a chunk section **/
+    public static final int SECTION_SIZE = 2048;
+
+    // Backing arrays of uniform section arrays, indexed by their value. They're never modified
+    private static final byte[][] UNIFORM_BACKINGS = new byte[16][];
+
+    static {
+        for (int value = 0; value < UNIFORM_BACKINGS.length; value++) {
+            byte[] backing = new byte[SECTION_SIZE];
+            Arrays.fill(backing, (byte) (value << 4 | value));
+            UNIFORM_BACKINGS[value] = backing;
+        }
+    }
+
+    private byte[] backing;
+
+    // Value of every nibble if the backing array is a shared uniform one, or -1 otherwise
+    private int uniformValue;
 
     public NibbleArray(int size) {
         this(new byte[size / 2]);
     }
 
     public NibbleArray(byte[] backing) {
+        this(backing, -1);
+    }
+
+    private NibbleArray(byte[] backing, int uniformValue) {
         this.backing = backing;
+        this.uniformValue = uniformValue;
+    }
+
+    /**
+     * Returns a chunk section sized array with every nibble set to the same value. The
+     * returned array shares its backing array with every other uniform array of the same
+     * value, until it gets modified.
+     *
+     * @param value The value of every nibble.
+     * @return The uniform array.
+     */
+    public static NibbleArray uniform(int value) {
+        if (value < 0 || value > 15) {
+            throw new IllegalArgumentException("Invalid nibble value " + value);
+        }
+
+        return new NibbleArray(UNIFORM_BACKINGS[value], value);
+    }
+
+    /**
+     * Returns the backing array of this nibble array. If it's shared with other
+     * uniform arrays, it's copied first, so the returned array can be modified.
+     *
+     * @return The backing array.
+     */
+    public byte[] getBacking() {
+        makeWritable();
+
+        return backing;
+    }
+
+    /**
+     * Returns the backing array of this nibble array without copying it, even if it's
+     * shared with other arrays. The returned array must never be modified.
+     *
+     * @return The backing array.
+     */
+    public byte[] getSharedBacking() {
+        return backing;
+    }
+
+    /**
+     * Returns the value every nibble of this array is set to, if they're all set to the same one.
+     *
+     * @return The value of every nibble, or -1 if the array is not uniform.
+     */
+    public int getUniformValue() {
+        if (uniformValue != -1) {
+            return uniformValue;
+        }
+
+        if (backing.length == 0) {
+            return -1;
+        }
+
+        byte first = backing[0];
+
+        if ((first & 0xF) != (first >> 4 & 0xF)) {
+            return -1;
+        }
+
+        for (byte value : backing) {
+            if (value != first) {
+                return -1;
+            }
+        }
+
+        return first & 0xF;
+    }
+
+    /**
+     * Returns a copy of this array. Copies of uniform arrays keep sharing their backing array.
+     *
+     * @return The copy.
+     */
+    public NibbleArray copy() {
+        return uniformValue != -1 ? new NibbleArray(backing, uniformValue) : new NibbleArray(backing.clone());
     }
 
     public int get(int index) {
@@ -27,6 +124,8 @@ public class NibbleArray {
     }
 
     public void set(int index, int value) {
+        makeWritable();
+
         int nibble = value & 0xF;
         int halfIndex = index / 2;
         int previous = this.backing[halfIndex];
@@ -37,4 +136,11 @@ public class NibbleArray {
             this.backing[halfIndex] = (byte) (previous & 0xF | nibble << 4);
         }
     }
+
+    private void makeWritable() {
+        if (uniformValue != -1) {
+            backing = backing.clone();
+            uniformValue = -1;
+        }
+    }
 }
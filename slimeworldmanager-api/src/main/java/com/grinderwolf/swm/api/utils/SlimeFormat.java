@@ -9,5 +9,8 @@ public class SlimeFormat {
     public static final byte[] SLIME_HEADER = new byte[] { -79, 11 };
 
     /** Latest version of the SRF that SWM supports **/
-    public static final byte SLIME_VERSION = 9;
+    public static final byte SLIME_VERSION = 14;
+
+    /** Light array flag of a section light array where every nibble has the same value, ORed with that value **/
+    public static final int UNIFORM_LIGHT_FLAG = 0x10;
 }
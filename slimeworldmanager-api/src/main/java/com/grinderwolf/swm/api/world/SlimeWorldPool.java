@@ -0,0 +1,94 @@
+package com.grinderwolf.swm.api.world;
+
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+
+/**
+ * Pool of generated, read-only copies of a template world, ready to be handed
+ * out instantly. Claimed worlds are replaced in the background: the template
+ * is loaded and copied asynchronously, and the copies are added to the server's
+ * world list a few at a time, so no single tick has to generate many of them.
+ * Worlds can only be claimed from the main thread.
+ */
+public interface SlimeWorldPool {
+
+    /**
+     * Returns the {@link SlimeLoader} the template is stored in.
+     *
+     * @return The {@link SlimeLoader} the template is stored in.
+     */
+    SlimeLoader getLoader();
+
+    /**
+     * Returns the name of the template world.
+     *
+     * @return The name of the template world.
+     */
+    String getTemplateName();
+
+    /**
+     * Returns the amount of worlds the pool tries to keep ready.
+     *
+     * @return The size of the pool.
+     */
+    int getSize();
+
+    /**
+     * Returns the amount of worlds that are generated and ready to be claimed.
+     *
+     * @return The amount of ready worlds.
+     */
+    int getReadyWorlds();
+
+    /**
+     * Takes a generated world out of the pool. It's already in the server's world list,
+     * under the name of the returned {@link SlimeWorld}. The world is read-only, so it's
+     * never saved, and it's up to the caller to unload it once it's done with it. A new
+     * world is prepared in the background to take its place.
+     *
+     * @return The claimed world, or {@code null} if the pool doesn't have any world ready.
+     */
+    SlimeWorld claim();
+
+    /**
+     * Returns the amount of claims that got a world.
+     *
+     * @return The amount of successful claims.
+     */
+    long getHits();
+
+    /**
+     * Returns the amount of claims that didn't get a world, as the pool was empty.
+     *
+     * @return The amount of failed claims.
+     */
+    long getMisses();
+
+    /**
+     * Returns the fraction of claims that got a world.
+     *
+     * @return The hit rate, between 0 and 1.
+     */
+    double getHitRate();
+
+    /**
+     * Returns the average time it took for new worlds to be ready,
+     * since they were requested until they were generated.
+     *
+     * @return The average refill time, in milliseconds.
+     */
+    long getAverageRefillTime();
+
+    /**
+     * Returns the longest time it took for a new world to be ready.
+     *
+     * @return The max refill time, in milliseconds.
+     */
+    long getMaxRefillTime();
+
+    /**
+     * Stops refilling the pool and unloads every world that hasn't been claimed.
+     * Worlds that have already been claimed aren't affected. Must be called from
+     * the main thread.
+     */
+    void close();
+}
@@ -73,4 +73,26 @@ public class SlimeProperties {
      */
     public static final SlimeProperty<String> DEFAULT_BIOME = new SlimePropertyString("defaultBiome", "minecraft:plains");
 
+    /**
+     * The zstd compression level used when the world is saved
+     */
+    public static final SlimeProperty<Integer> COMPRESSION_LEVEL = new SlimePropertyInt("compressionLevel", 3, (value) ->
+        value >= -7 && value <= 22
+    );
+
+    /**
+     * Time between autosaves of the world, in seconds. When set to 0, the world is
+     * autosaved as often as the server autosaves its own worlds. Either way, autosaves
+     * of SWM worlds are spread out instead of all happening on the same tick
+     */
+    public static final SlimeProperty<Integer> SAVE_INTERVAL = new SlimePropertyInt("saveInterval", 0, (value) ->
+        value >= 0
+    );
+
+    /**
+     * Whether or not chunks are kept encoded when the world is loaded, and only
+     * decoded once they're accessed for the first time
+     */
+    public static final SlimeProperty<Boolean> LAZY_CHUNKS = new SlimePropertyBoolean("lazyChunks", false);
+
 }
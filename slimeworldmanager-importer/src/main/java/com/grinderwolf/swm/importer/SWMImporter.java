@@ -12,6 +12,8 @@ import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeChunk;
 import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
+import com.grinderwolf.swm.nms.WorldPalette;
+import com.grinderwolf.swm.nms.utils.VarInts;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -42,6 +44,7 @@ public class SWMImporter {
 
     private static final Pattern MAP_FILE_PATTERN = Pattern.compile("^(?:map_([0-9]*).dat)$");
     private static final int SECTOR_SIZE = 4096;
+    private static final int CHUNKS_PER_FRAME = 64;
 
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -434,6 +437,9 @@ public class SWMImporter {
             // World version
             outStream.writeByte(worldVersion);
 
+            // Zstd dictionary (none)
+            outStream.writeInt(0);
+
             // Lowest chunk coordinates
             int minX = sortedChunks.stream().mapToInt(SlimeChunk::getX).min().getAsInt();
             int minZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).min().getAsInt();
@@ -462,39 +468,48 @@ public class SWMImporter {
             int chunkMaskSize = (int) Math.ceil((width * depth) / 8.0D);
             writeBitSetAsBytes(outStream, chunkBitset, chunkMaskSize);
 
-            // Chunks
-            byte[] chunkData = serializeChunks(sortedChunks, worldVersion);
-            byte[] compressedChunkData = Zstd.compress(chunkData);
+            // Chunks, compressed in independent frames of up to CHUNKS_PER_FRAME chunks
+            WorldPalette worldPalette = new WorldPalette();
+            int frameCount = (sortedChunks.size() + CHUNKS_PER_FRAME - 1) / CHUNKS_PER_FRAME;
+            int[][] chunkLengths = new int[frameCount][];
+            int[] frameLengths = new int[frameCount];
+            byte[][] compressedFrames = new byte[frameCount][];
 
-            outStream.writeInt(compressedChunkData.length);
-            outStream.writeInt(chunkData.length);
-            outStream.write(compressedChunkData);
+            for (int frame = 0; frame < frameCount; frame++) {
+                List<SlimeChunk> frameChunks = sortedChunks.subList(frame * CHUNKS_PER_FRAME, Math.min((frame + 1) * CHUNKS_PER_FRAME, sortedChunks.size()));
+                chunkLengths[frame] = new int[frameChunks.size()];
 
-            // Tile Entities
-            List<CompoundTag> tileEntitiesList = sortedChunks.stream().flatMap(chunk -> chunk.getTileEntities().stream()).collect(Collectors.toList());
-            ListTag<CompoundTag> tileEntitiesNbtList = new ListTag<>("tiles", TagType.TAG_COMPOUND, tileEntitiesList);
-            CompoundTag tileEntitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(tileEntitiesNbtList)));
-            byte[] tileEntitiesData = serializeCompoundTag(tileEntitiesCompound);
-            byte[] compressedTileEntitiesData = Zstd.compress(tileEntitiesData);
+                byte[] chunkData = serializeChunks(frameChunks, worldPalette, worldVersion, chunkLengths[frame]);
+                frameLengths[frame] = chunkData.length;
+                compressedFrames[frame] = Zstd.compress(chunkData);
+            }
 
-            outStream.writeInt(compressedTileEntitiesData.length);
-            outStream.writeInt(tileEntitiesData.length);
-            outStream.write(compressedTileEntitiesData);
+            // Chunk index
+            outStream.writeInt(frameCount);
 
-            // Entities
-            List<CompoundTag> entitiesList = sortedChunks.stream().flatMap(chunk -> chunk.getEntities().stream()).collect(Collectors.toList());
+            for (int frame = 0; frame < frameCount; frame++) {
+                outStream.writeInt(chunkLengths[frame].length);
+                outStream.writeInt(compressedFrames[frame].length);
+                outStream.writeInt(frameLengths[frame]);
+            }
 
-            outStream.writeBoolean(!entitiesList.isEmpty());
+            for (int[] frameChunkLengths : chunkLengths) {
+                for (int chunkLength : frameChunkLengths) {
+                    outStream.writeInt(chunkLength);
+                }
+            }
+
+            // Block states table
+            CompoundTag blockStatesCompound = worldPalette.toCompound();
+            byte[] blockStatesData = blockStatesCompound == null ? new byte[0] : serializeCompoundTag(blockStatesCompound);
+            byte[] compressedBlockStatesData = Zstd.compress(blockStatesData);
 
-            if (!entitiesList.isEmpty()) {
-                ListTag<CompoundTag> entitiesNbtList = new ListTag<>("entities", TagType.TAG_COMPOUND, entitiesList);
-                CompoundTag entitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList)));
-                byte[] entitiesData = serializeCompoundTag(entitiesCompound);
-                byte[] compressedEntitiesData = Zstd.compress(entitiesData);
+            outStream.writeInt(compressedBlockStatesData.length);
+            outStream.writeInt(blockStatesData.length);
+            outStream.write(compressedBlockStatesData);
 
-                outStream.writeInt(compressedEntitiesData.length);
-                outStream.writeInt(entitiesData.length);
-                outStream.write(compressedEntitiesData);
+            for (byte[] compressedFrame : compressedFrames) {
+                outStream.write(compressedFrame);
             }
 
             // Extra Tag
@@ -544,11 +559,14 @@ public class SWMImporter {
         }
     }
 
-    private static byte[] serializeChunks(List<SlimeChunk> chunks, byte worldVersion) throws IOException {
+    private static byte[] serializeChunks(List<SlimeChunk> chunks, WorldPalette worldPalette, byte worldVersion, int[] chunkLengths) throws IOException {
         ByteArrayOutputStream outByteStream = new ByteArrayOutputStream(16384);
         DataOutputStream outStream = new DataOutputStream(outByteStream);
 
-        for (SlimeChunk chunk : chunks) {
+        for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+            SlimeChunk chunk = chunks.get(chunkIndex);
+            int start = outStream.size();
+
             // Height Maps
             if (worldVersion >= 0x04) {
                 byte[] heightMaps = serializeCompoundTag(chunk.getHeightMaps());
@@ -588,24 +606,16 @@ public class SWMImporter {
                 }
 
                 // Block Light
-                boolean hasBlockLight = section.getBlockLight() != null;
-                outStream.writeBoolean(hasBlockLight);
-
-                if (hasBlockLight) {
-                    outStream.write(section.getBlockLight().getBacking());
-                }
+                writeLightArray(outStream, section.getBlockLight());
 
                 // Block Data
                 if (worldVersion >= 0x04) {
                     // Palette
                     List<CompoundTag> palette = section.getPalette().getValue();
-                    outStream.writeInt(palette.size());
+                    VarInts.write(outStream, palette.size());
 
                     for (CompoundTag value : palette) {
-                        byte[] serializedValue = serializeCompoundTag(value);
-
-                        outStream.writeInt(serializedValue.length);
-                        outStream.write(serializedValue);
+                        VarInts.write(outStream, worldPalette.getIndex(value));
                     }
 
                     // Block states
@@ -622,18 +632,48 @@ public class SWMImporter {
                 }
 
                 // Sky Light
-                boolean hasSkyLight = section.getSkyLight() != null;
-                outStream.writeBoolean(hasSkyLight);
-
-                if (hasSkyLight) {
-                    outStream.write(section.getSkyLight().getBacking());
-                }
+                writeLightArray(outStream, section.getSkyLight());
             }
+
+            // Tile Entities and Entities
+            writeEntityList(outStream, "tiles", chunk.getTileEntities());
+            writeEntityList(outStream, "entities", chunk.getEntities());
+
+            chunkLengths[chunkIndex] = outStream.size() - start;
         }
 
         return outByteStream.toByteArray();
     }
 
+    private static void writeLightArray(DataOutputStream outStream, NibbleArray lightArray) throws IOException {
+        if (lightArray == null) {
+            outStream.writeByte(0);
+            return;
+        }
+
+        int uniformValue = lightArray.getUniformValue();
+
+        if (uniformValue != -1) {
+            outStream.writeByte(SlimeFormat.UNIFORM_LIGHT_FLAG | uniformValue);
+        } else {
+            outStream.writeByte(1);
+            outStream.write(lightArray.getBacking());
+        }
+    }
+
+    private static void writeEntityList(DataOutputStream outStream, String listName, List<CompoundTag> entities) throws IOException {
+        if (entities.isEmpty()) {
+            outStream.writeInt(0);
+            return;
+        }
+
+        ListTag<CompoundTag> entitiesNbtList = new ListTag<>(listName, TagType.TAG_COMPOUND, entities);
+        byte[] entitiesData = serializeCompoundTag(new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList))));
+
+        outStream.writeInt(entitiesData.length);
+        outStream.write(entitiesData);
+    }
+
     private static byte[] serializeCompoundTag(CompoundTag tag) throws IOException {
         ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
         NBTOutputStream outStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
@@ -0,0 +1,127 @@
+package com.grinderwolf.swm.nms;
+
+import com.grinderwolf.swm.api.world.SlimeWorld;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Autosaves SWM worlds, either at their own save interval or at the server's autosave
+ * period, so they're never all saved at once by the server. Instead of saving every world
+ * on the same tick, each world gets a phase offset inside its interval, chosen so
+ * worlds are spread evenly no matter how many of them are registered. Saves are also
+ * limited to {@link #getMaxSavesPerSecond()} across all worlds: saves over that budget
+ * are delayed to the next ticks. Worlds that turn out not to have changed since their
+ * last save aren't saved, so they don't count against the budget. Only used from the
+ * main thread.
+ */
+public class AutosaveScheduler {
+
+    public static final int TICKS_PER_SECOND = 20;
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    /** Max amount of worlds saved every second, or 0 or less to save them as soon as they're due **/
+    @Getter
+    @Setter
+    private static volatile int maxSavesPerSecond = 5;
+
+    private static final Map<SlimeWorld, ScheduledWorld> scheduledWorlds = new IdentityHashMap<>();
+    private static final Queue<ScheduledWorld> saveQueue = new PriorityQueue<>(Comparator.comparingLong(world -> world.nextSave));
+    private static long registrations;
+    private static long currentTick;
+    private static double availableSaves;
+
+    /**
+     * Starts autosaving the given world every {@code interval} ticks.
+     *
+     * @param world    The world.
+     * @param interval Time between saves, in ticks.
+     * @param saveTask Task that saves the world, returning whether or not a save has been started.
+     */
+    public static void register(SlimeWorld world, long interval, BooleanSupplier saveTask) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid save interval " + interval);
+        }
+
+        // Consecutive multiples of the golden ratio never bunch up, so phases stay evenly spread
+        double phase = (registrations++ * GOLDEN_RATIO_FRACTION) % 1.0D;
+        ScheduledWorld scheduledWorld = new ScheduledWorld(saveTask, interval, currentTick + 1 + (long) (phase * interval));
+        ScheduledWorld oldWorld = scheduledWorlds.put(world, scheduledWorld);
+
+        if (oldWorld != null) {
+            saveQueue.remove(oldWorld);
+        }
+
+        saveQueue.add(scheduledWorld);
+    }
+
+    public static void unregister(SlimeWorld world) {
+        ScheduledWorld scheduledWorld = scheduledWorlds.remove(world);
+
+        if (scheduledWorld != null) {
+            saveQueue.remove(scheduledWorld);
+        }
+    }
+
+    public static boolean isScheduled(SlimeWorld world) {
+        return scheduledWorlds.containsKey(world);
+    }
+
+    public static int getScheduledWorlds() {
+        return scheduledWorlds.size();
+    }
+
+    /**
+     * Saves the worlds that are due, as long as the save budget allows it.
+     * Has to be called from the main thread on every tick.
+     */
+    public static void tick() {
+        currentTick++;
+
+        int savesPerSecond = maxSavesPerSecond;
+
+        if (savesPerSecond > 0) {
+            availableSaves = Math.min(savesPerSecond, availableSaves + (double) savesPerSecond / TICKS_PER_SECOND);
+        }
+
+        while (!saveQueue.isEmpty() && saveQueue.peek().nextSave <= currentTick) {
+            if (savesPerSecond > 0 && availableSaves < 1.0D) {
+                break;
+            }
+
+            ScheduledWorld world = saveQueue.poll();
+
+            // Stick to the world's phase, unless the budget delayed it by more than a whole interval
+            world.nextSave = Math.max(world.nextSave + world.interval, currentTick + 1);
+            saveQueue.add(world);
+
+            try {
+                // Unmodified worlds aren't saved, so they don't take the place of the ones that are
+                if (world.saveTask.getAsBoolean() && savesPerSecond > 0) {
+                    availableSaves--;
+                }
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+
+    private static final class ScheduledWorld {
+
+        private final BooleanSupplier saveTask;
+        private final long interval;
+        private long nextSave;
+
+        private ScheduledWorld(BooleanSupplier saveTask, long interval, long nextSave) {
+            this.saveTask = saveTask;
+            this.interval = interval;
+            this.nextSave = nextSave;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.grinderwolf.swm.nms;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of the block states palette entries resolve to. Entries
+ * are keyed by their binary NBT, the form palettes are stored in both in the
+ * world's data file and in the sections read from loaded chunks, so looking
+ * an entry up doesn't have to parse it. The same few hundred block states make
+ * up most palettes, so each of them only has to be resolved once, no matter how
+ * many sections or worlds use it. Safe to use from multiple threads.
+ *
+ * @param <T> The type of the resolved block states.
+ */
+public class BlockStateCache<T> {
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder cachedStates = new LongAdder();
+
+    private final Map<ByteBuffer, T> states = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the block state a palette entry resolves to.
+     *
+     * @param serializedEntry The palette entry, serialized as an NBT compound named "".
+     * @return The block state, or {@code null} if it hasn't been cached yet.
+     */
+    public T get(byte[] serializedEntry) {
+        T state = states.get(ByteBuffer.wrap(serializedEntry));
+        (state != null ? hits : misses).increment();
+
+        return state;
+    }
+
+    /**
+     * Caches the block state a palette entry resolves to. If another thread
+     * has cached it in the meantime, the cached block state is kept.
+     *
+     * @param serializedEntry The palette entry, serialized as an NBT compound named "". It must not be modified afterwards.
+     * @param state           The block state.
+     * @return The cached block state.
+     */
+    public T put(byte[] serializedEntry, T state) {
+        T previous = states.putIfAbsent(ByteBuffer.wrap(serializedEntry), state);
+
+        if (previous != null) {
+            return previous;
+        }
+
+        cachedStates.increment();
+
+        return state;
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getCachedStates() {
+        return cachedStates.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups that found their block state in the cache.
+     *
+     * @return The hit rate, between 0 and 1.
+     */
+    public static double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+
+        return lookups == 0 ? 0.0D : (double) hitCount / lookups;
+    }
+}
@@ -0,0 +1,261 @@
+package com.grinderwolf.swm.nms;
+
+import com.grinderwolf.swm.api.world.SlimeChunk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Chunks of a world, indexed by their coordinates packed into a long.
+ *
+ * The index is split into segments, each one holding an open addressing
+ * table. Writes lock the segment they're updating and modify its table in
+ * place, only replacing it when it has to grow. Reads never lock: slots are
+ * read and written atomically, and entries are never removed, so a lookup
+ * always finds either the old or the new chunk. Copies of the index share
+ * their tables until one of them writes to a segment, which copies its
+ * table first.
+ */
+public class ChunkIndex {
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int MIN_TABLE_CAPACITY = 8;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public ChunkIndex() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(new Table(MIN_TABLE_CAPACITY), false);
+        }
+    }
+
+    public ChunkIndex(Collection<? extends SlimeChunk> chunks) {
+        List<List<SlimeChunk>> segmentChunks = new ArrayList<>(SEGMENT_COUNT);
+
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segmentChunks.add(new ArrayList<>());
+        }
+
+        for (SlimeChunk chunk : chunks) {
+            segmentChunks.get(segmentIndex(mix(key(chunk.getX(), chunk.getZ())))).add(chunk);
+        }
+
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Table table = new Table(tableCapacity(segmentChunks.get(i).size()));
+
+            for (SlimeChunk chunk : segmentChunks.get(i)) {
+                long key = key(chunk.getX(), chunk.getZ());
+                table.put(key, mix(key), chunk);
+            }
+
+            segments[i] = new Segment(table, false);
+        }
+    }
+
+    private ChunkIndex(Segment[] source) {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = source[i];
+
+            synchronized (segment) {
+                segment.shared = true;
+                segments[i] = new Segment(segment.table, true);
+            }
+        }
+    }
+
+    /**
+     * Packs the coordinates of a chunk into a single key. Unlike
+     * {@code z * Integer.MAX_VALUE + x}, no two chunks share the same key.
+     *
+     * @param x X coordinate of the chunk.
+     * @param z Z coordinate of the chunk.
+     * @return The key of the chunk.
+     */
+    public static long key(int x, int z) {
+        return (x & 0xFFFFFFFFL) | ((long) z << 32);
+    }
+
+    public SlimeChunk get(int x, int z) {
+        long key = key(x, z);
+        int hash = mix(key);
+
+        return segments[segmentIndex(hash)].table.get(key, hash);
+    }
+
+    /**
+     * Stores a chunk, replacing the chunk previously stored at the same coordinates.
+     *
+     * @param chunk The chunk.
+     * @return The chunk that was replaced, or {@code null} if there was none.
+     */
+    public SlimeChunk put(SlimeChunk chunk) {
+        long key = key(chunk.getX(), chunk.getZ());
+        int hash = mix(key);
+        Segment segment = segments[segmentIndex(hash)];
+
+        synchronized (segment) {
+            Table table = segment.table;
+
+            // Tables are only copied when they're shared with another index or have to grow
+            if (segment.shared || table.isFull() && table.get(key, hash) == null) {
+                Table newTable = new Table(tableCapacity(table.size + 1));
+                table.copyTo(newTable);
+                SlimeChunk previous = newTable.put(key, hash, chunk);
+
+                segment.table = newTable;
+                segment.shared = false;
+
+                return previous;
+            }
+
+            return table.put(key, hash, chunk);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            size += segment.table.size;
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns every chunk in the index. The returned list is a snapshot, so it's
+     * safe to iterate and modify while the index is being updated, but chunks
+     * stored in the meantime might be missing.
+     *
+     * @return A new list containing the chunks.
+     */
+    public List<SlimeChunk> values() {
+        List<SlimeChunk> chunks = new ArrayList<>(size());
+
+        for (Segment segment : segments) {
+            AtomicReferenceArray<Entry> entries = segment.table.entries;
+
+            for (int slot = 0; slot < entries.length(); slot++) {
+                Entry entry = entries.get(slot);
+
+                if (entry != null) {
+                    chunks.add(entry.chunk);
+                }
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Returns a copy of this index. Both indices share their tables until one of them gets modified.
+     *
+     * @return The copy.
+     */
+    public ChunkIndex copy() {
+        return new ChunkIndex(segments);
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int segmentIndex(int hash) {
+        return hash >>> 28 & (SEGMENT_COUNT - 1);
+    }
+
+    private static int tableCapacity(int size) {
+        // Keep the load factor below 0.5
+        return Math.max(MIN_TABLE_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1);
+    }
+
+    private static final class Segment {
+
+        private volatile Table table;
+        // Whether the table is shared with another index, so it has to be copied before it's modified
+        private boolean shared;
+
+        private Segment(Table table, boolean shared) {
+            this.table = table;
+            this.shared = shared;
+        }
+    }
+
+    private static final class Table {
+
+        private final AtomicReferenceArray<Entry> entries;
+        private volatile int size;
+
+        private Table(int capacity) {
+            this.entries = new AtomicReferenceArray<>(capacity);
+        }
+
+        private SlimeChunk get(long key, int hash) {
+            int mask = entries.length() - 1;
+
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                Entry entry = entries.get(slot);
+
+                if (entry == null) {
+                    return null;
+                }
+
+                if (entry.key == key) {
+                    return entry.chunk;
+                }
+            }
+        }
+
+        // Whether storing one more chunk would take the load factor over 0.5
+        private boolean isFull() {
+            return (size + 1) * 2 > entries.length();
+        }
+
+        // Only called while holding the lock of the segment, or before the table gets published
+        private SlimeChunk put(long key, int hash, SlimeChunk chunk) {
+            int mask = entries.length() - 1;
+
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                Entry entry = entries.get(slot);
+
+                if (entry == null) {
+                    entries.set(slot, new Entry(key, chunk));
+                    size++;
+
+                    return null;
+                }
+
+                if (entry.key == key) {
+                    entries.set(slot, new Entry(key, chunk));
+
+                    return entry.chunk;
+                }
+            }
+        }
+
+        private void copyTo(Table table) {
+            for (int slot = 0; slot < entries.length(); slot++) {
+                Entry entry = entries.get(slot);
+
+                if (entry != null) {
+                    table.put(entry.key, mix(entry.key), entry.chunk);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final long key;
+        private final SlimeChunk chunk;
+
+        private Entry(long key, SlimeChunk chunk) {
+            this.key = key;
+            this.chunk = chunk;
+        }
+    }
+}
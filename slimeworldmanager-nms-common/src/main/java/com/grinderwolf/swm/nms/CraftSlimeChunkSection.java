@@ -2,13 +2,20 @@ package com.grinderwolf.swm.nms;
 
 import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.TagType;
+import com.flowpowered.nbt.stream.NBTInputStream;
 import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 @Getter
-@RequiredArgsConstructor
 public class CraftSlimeChunkSection implements SlimeChunkSection {
 
     // Pre 1.13 block data
@@ -16,9 +23,74 @@ public class CraftSlimeChunkSection implements SlimeChunkSection {
     private final NibbleArray data;
 
     // Post 1.13 block data
-    private final ListTag<CompoundTag> palette;
+    private volatile ListTag<CompoundTag> palette;
     private final long[] blockStates;
 
+    /**
+     * Palette entries as binary NBT compounds, when the section has been read straight from
+     * a loaded chunk or from a data file. They're written to the world's data file as they are, so the
+     * palette tag is only built if it's requested. Once that happens, this is {@code null},
+     * as the palette tag could be modified.
+     */
+    private volatile byte[][] serializedPalette;
+
     private final NibbleArray blockLight;
     private final NibbleArray skyLight;
+
+    public CraftSlimeChunkSection(byte[] blocks, NibbleArray data, ListTag<CompoundTag> palette, long[] blockStates,
+                                  NibbleArray blockLight, NibbleArray skyLight) {
+        this.blocks = blocks;
+        this.data = data;
+        this.palette = palette;
+        this.blockStates = blockStates;
+        this.serializedPalette = null;
+        this.blockLight = blockLight;
+        this.skyLight = skyLight;
+    }
+
+    public CraftSlimeChunkSection(byte[][] serializedPalette, long[] blockStates, NibbleArray blockLight, NibbleArray skyLight) {
+        this.blocks = null;
+        this.data = null;
+        this.palette = null;
+        this.blockStates = blockStates;
+        this.serializedPalette = serializedPalette;
+        this.blockLight = blockLight;
+        this.skyLight = skyLight;
+    }
+
+    @Override
+    public ListTag<CompoundTag> getPalette() {
+        ListTag<CompoundTag> palette = this.palette;
+
+        if (palette == null) {
+            synchronized (this) {
+                palette = this.palette;
+                byte[][] serializedPalette = this.serializedPalette;
+
+                if (palette == null && serializedPalette != null) {
+                    List<CompoundTag> entries = new ArrayList<>(serializedPalette.length);
+
+                    for (byte[] entry : serializedPalette) {
+                        entries.add(readCompound(entry));
+                    }
+
+                    palette = new ListTag<>("", TagType.TAG_COMPOUND, entries);
+                    this.palette = palette;
+                    this.serializedPalette = null;
+                }
+            }
+        }
+
+        return palette;
+    }
+
+    private static CompoundTag readCompound(byte[] serializedCompound) {
+        NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(serializedCompound), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+
+        try {
+            return (CompoundTag) stream.readTag();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read palette entry", ex);
+        }
+    }
 }
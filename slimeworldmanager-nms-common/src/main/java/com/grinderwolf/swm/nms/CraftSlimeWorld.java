@@ -3,20 +3,39 @@ package com.grinderwolf.swm.nms;
 import com.flowpowered.nbt.*;
 import com.flowpowered.nbt.stream.NBTInputStream;
 import com.flowpowered.nbt.stream.NBTOutputStream;
-import com.github.luben.zstd.Zstd;
 import com.grinderwolf.swm.api.exceptions.WorldAlreadyExistsException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.utils.SlimeFormat;
 import com.grinderwolf.swm.api.world.*;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.compression.ZstdCodec;
+import com.grinderwolf.swm.nms.compression.ZstdDictionaries;
+import com.grinderwolf.swm.nms.compression.ZstdDictionary;
+import com.grinderwolf.swm.nms.utils.BufferPool;
+import com.grinderwolf.swm.nms.utils.FastByteArrayOutputStream;
+import com.grinderwolf.swm.nms.utils.VarInts;
+import com.grinderwolf.swm.nms.utils.XXHash64;
 import lombok.*;
 import org.bukkit.Bukkit;
 import org.bukkit.Difficulty;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static com.grinderwolf.swm.api.world.properties.SlimeProperties.*;
 
@@ -25,9 +44,31 @@ import static com.grinderwolf.swm.api.world.properties.SlimeProperties.*;
 @AllArgsConstructor
 public class CraftSlimeWorld implements SlimeWorld {
 
+    private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024 * 1024;
+
+    // Chunks are encoded and compressed in batches of this size, in parallel
+    private static final int CHUNKS_PER_FRAME = 64;
+    private static final ForkJoinPool SERIALIZATION_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("SWM Serialization Thread #" + thread.getPoolIndex());
+
+        return thread;
+    }, null, false);
+
+    // Serialization buffers are reused by every world section serialized on the same thread
+    private static final ThreadLocal<FastByteArrayOutputStream> DATA_BUFFER = ThreadLocal.withInitial(() -> new FastByteArrayOutputStream(65536));
+
+    // Rough heap usage of the objects size estimates can't look into
+    private static final int CHUNK_OVERHEAD = 512;
+    private static final int ENTITY_SIZE = 512;
+    private static final int PALETTE_ENTRY_SIZE = 256;
+
+    // Level data entries that keep changing on their own, even while nothing else in the world does
+    private static final List<String> TICKING_LEVEL_DATA = Arrays.asList("Time", "DayTime", "LastPlayed", "rainTime", "thunderTime", "clearWeatherTime");
+
     private SlimeLoader loader;
     private final String name;
-    private final Map<Long, SlimeChunk> chunks;
+    private final ChunkIndex chunks;
     private final CompoundTag extraData;
     private final List<CompoundTag> worldMaps;
 
@@ -39,13 +80,46 @@ public class CraftSlimeWorld implements SlimeWorld {
 
     private final boolean locked;
 
+    // Encoded chunks, spliced into the data file on every save until they get marked as dirty or their light changes
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, EncodedChunk> encodedChunks = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Set<Long> dirtyChunks = ConcurrentHashMap.newKeySet();
+    // Chunks whose light might still change because of a modification written by the last save
+    @Getter(AccessLevel.NONE)
+    private final Set<Long> unsettledLightChunks = ConcurrentHashMap.newKeySet();
+
+    // Whether the next snapshot has to be created even if nothing seems to have changed, like after a failed save
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean forceNextSnapshot = new AtomicBoolean(true);
+    // Hash of the world data, without its ticking entries, when the last snapshot was created
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong worldDataHash = new AtomicLong();
+    // Hash of the last data file written by a snapshot, or null if none has been written yet
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Long> savedFileHash = new AtomicReference<>();
+    // Sequence number of the last snapshot that has been captured, and of the last one that has been saved
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong snapshotSequence = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong savedSequence = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final Object fileLock = new Object();
+
+    // Block states table of the data file the world was loaded from, which the encodings of its lazy chunks reference
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<BlockStatesTable> preloadedBlockStates = new AtomicReference<>();
+
     @Override
     public SlimeChunk getChunk(int x, int z) {
-        synchronized (chunks) {
-            Long index = (((long) z) * Integer.MAX_VALUE + ((long) x));
+        SlimeChunk chunk = chunks.get(x, z);
 
-            return chunks.get(index);
+        // Lazy chunks are decoded the first time they're requested
+        if (chunk instanceof LazySlimeChunk) {
+            return ((LazySlimeChunk) chunk).decode();
         }
+
+        return chunk;
     }
 
     public void updateChunk(SlimeChunk chunk) {
@@ -54,9 +128,33 @@ public class CraftSlimeWorld implements SlimeWorld {
                     + chunk.getWorldName() + "', not to '" + getName() + "'!");
         }
 
-        synchronized (chunks) {
-            chunks.put(((long) chunk.getZ()) * Integer.MAX_VALUE + ((long) chunk.getX()), chunk);
-        }
+        chunks.put(chunk);
+    }
+
+    /**
+     * Keeps the block states table of the data file this world was loaded from. Lazy chunks
+     * that never get decoded can then be saved without decoding and encoding them again.
+     * Has to be called before the world is saved for the first time.
+     *
+     * @param blockStates      The block states table of the data file.
+     * @param serializedStates The same block states, serialized as NBT compounds named "".
+     */
+    public void preloadBlockStates(List<CompoundTag> blockStates, byte[][] serializedStates) {
+        preloadedBlockStates.set(new BlockStatesTable(blockStates, serializedStates));
+    }
+
+    /**
+     * Marks a chunk as modified, so its cached encoding gets
+     * discarded and the next saves encode it again.
+     *
+     * @param x X coordinate of the chunk.
+     * @param z Z coordinate of the chunk.
+     */
+    public void markChunkDirty(int x, int z) {
+        long index = ChunkIndex.key(x, z);
+
+        dirtyChunks.add(index);
+        encodedChunks.remove(index);
     }
 
     @Override
@@ -88,20 +186,97 @@ public class CraftSlimeWorld implements SlimeWorld {
             }
         }
 
-        CraftSlimeWorld world;
-
-        synchronized (chunks) {
-            world = new CraftSlimeWorld(loader == null ? this.loader : loader, worldName, new HashMap<>(chunks), extraData.clone(),
-                    new ArrayList<>(worldMaps), version, propertyMap, loader == null, lock);
-        }
+        CraftSlimeWorld world = new CraftSlimeWorld(loader == null ? this.loader : loader, worldName, copyChunks(), extraData.clone(),
+                new ArrayList<>(worldMaps), version, propertyMap, loader == null, lock);
 
         if (loader != null) {
-            loader.saveWorld(worldName, world.serialize(), lock);
+            loader.saveWorld(worldName, world::serialize, lock);
         }
 
         return world;
     }
 
+    /**
+     * Returns a read-only copy of this world, with the same name but a different set of properties.
+     *
+     * @param propertyMap The properties of the copy.
+     * @return The copy.
+     */
+    public CraftSlimeWorld copy(SlimePropertyMap propertyMap) {
+        return new CraftSlimeWorld(loader, name, copyChunks(), extraData.clone(), new ArrayList<>(worldMaps), version, propertyMap, true, false);
+    }
+
+    private ChunkIndex copyChunks() {
+        // Chunks backed by a chunk loaded in this world keep changing while the world is played, so the copy
+        // gets a detached copy of them instead of an alias. The other chunks are never modified in place
+        ChunkIndex copiedChunks = chunks.copy();
+
+        for (SlimeChunk chunk : copiedChunks.values()) {
+            if (!(chunk instanceof CraftSlimeChunk) && !(chunk instanceof LazySlimeChunk)) {
+                copiedChunks.put(copyChunk(chunk));
+            }
+        }
+
+        return copiedChunks;
+    }
+
+    /**
+     * Returns a rough estimate of the heap memory taken up by the chunks of this world. Chunks
+     * that haven't been decoded yet are counted as the size of their encoded data.
+     *
+     * @return The estimated size, in bytes.
+     */
+    public long estimateSize() {
+        long size = 0;
+
+        for (SlimeChunk chunk : chunks.values()) {
+            if (chunk instanceof LazySlimeChunk && !((LazySlimeChunk) chunk).isDecoded()) {
+                size += CHUNK_OVERHEAD + ((LazySlimeChunk) chunk).getEncodedLength();
+                continue;
+            }
+
+            size += CHUNK_OVERHEAD + (chunk.getBiomes() == null ? 0 : chunk.getBiomes().length * 4L)
+                    + (chunk.getTileEntities().size() + chunk.getEntities().size()) * (long) ENTITY_SIZE;
+
+            for (SlimeChunkSection section : chunk.getSections()) {
+                if (section != null) {
+                    size += estimateSize(section);
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private static long estimateSize(SlimeChunkSection section) {
+        long size = estimateSize(section.getBlockLight()) + estimateSize(section.getSkyLight());
+
+        if (section.getBlocks() != null) {
+            size += section.getBlocks().length + estimateSize(section.getData());
+        }
+
+        if (section.getBlockStates() != null) {
+            size += section.getBlockStates().length * 8L;
+        }
+
+        byte[][] serializedPalette = section instanceof CraftSlimeChunkSection ? ((CraftSlimeChunkSection) section).getSerializedPalette() : null;
+
+        if (serializedPalette != null) {
+            for (byte[] entry : serializedPalette) {
+                size += entry.length;
+            }
+        } else if (section.getPalette() != null) {
+            size += section.getPalette().getValue().size() * (long) PALETTE_ENTRY_SIZE;
+        }
+
+        return size;
+    }
+
+    private static long estimateSize(NibbleArray array) {
+        // Uniform arrays share their backing array with every other one
+        return array == null || array.getUniformValue() != -1 ? 0 : array.getSharedBacking().length;
+    }
+
     @Override
     public SlimeWorld.SlimeProperties getProperties() {
         return SlimeWorld.SlimeProperties.builder().spawnX(propertyMap.getValue(SPAWN_X))
@@ -117,16 +292,281 @@ public class CraftSlimeWorld implements SlimeWorld {
 
     // World Serialization methods
 
-    public byte[] serialize() {
-        List<SlimeChunk> sortedChunks;
+    public byte[] serialize() throws IOException {
+        FastByteArrayOutputStream outByteStream = new FastByteArrayOutputStream(16384);
+        serialize(outByteStream);
+
+        return outByteStream.toByteArray();
+    }
+
+    public void serialize(WritableByteChannel channel) throws IOException {
+        serialize(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Writes this world's data file into the given stream. Loaded chunks are
+     * read straight from the server, so this should only be called from the
+     * main thread while the world is loaded: use {@link #createSnapshot()} to
+     * save it from other threads instead. The stream is flushed, but not closed.
+     *
+     * @param out The stream to write the data file to.
+     * @throws IOException if the stream could not be written.
+     */
+    public void serialize(OutputStream out) throws IOException {
+        WorldSnapshot snapshot = createSnapshot();
+        snapshot.capture(Long.MAX_VALUE);
+        snapshot.write(out);
+    }
+
+    /**
+     * Creates a snapshot of this world, which has to be captured on the main
+     * thread but can then be written from any thread.
+     *
+     * @return The snapshot, still not captured.
+     */
+    public WorldSnapshot createSnapshot() {
+        List<SlimeChunk> chunkList = chunks.values();
+        chunkList.sort(Comparator.comparingLong(chunk -> (long) chunk.getZ() * Integer.MAX_VALUE + (long) chunk.getX()));
+
+        return new WorldSnapshot(this, chunkList, version);
+    }
+
+    /**
+     * Creates a snapshot of this world, unless nothing has changed since the last snapshot
+     * was created: no chunk is dirty and the world data is the same. Level data entries that
+     * tick on their own, like the world time, are left out of the comparison, so they're only
+     * saved along with other changes.
+     *
+     * @return The snapshot, still not captured, or {@code null} if the world doesn't have to be saved.
+     */
+    public WorldSnapshot createSnapshotIfModified() {
+        boolean dataModified;
+
+        try {
+            long dataHash = hashWorldData();
+            dataModified = worldDataHash.getAndSet(dataHash) != dataHash;
+        } catch (IOException ex) { // Let the save itself report the error
+            dataModified = true;
+        }
+
+        if (!forceNextSnapshot.getAndSet(false) && !dataModified && dirtyChunks.isEmpty() && !hasLightChanged()) {
+            return null;
+        }
+
+        return createSnapshot();
+    }
+
+    /**
+     * Checks whether the light of any chunk around the chunks written by the last save
+     * has changed since then. Light updates land some ticks after the blocks that caused
+     * them changed, both in the modified chunk and in its neighbours, and they don't mark
+     * any chunk as dirty, so the light of those chunks is compared against their encoding.
+     * Chunks whose light still matches their encoding have settled, and stop being checked.
+     * The ones whose light has changed are left for {@link #snapshotChunk} to encode again.
+     *
+     * @return Whether or not the light of any of those chunks has changed.
+     */
+    private boolean hasLightChanged() {
+        Iterator<Long> iterator = unsettledLightChunks.iterator();
+
+        while (iterator.hasNext()) {
+            long index = iterator.next();
+            SlimeChunk chunk = chunks.get((int) index, (int) (index >>> 32));
+
+            if (!(chunk instanceof LightTrackingChunk)) {
+                iterator.remove();
+                continue;
+            }
+
+            EncodedChunk encodedChunk = encodedChunks.get(index);
+
+            // Chunks whose encoding hasn't been cached yet, like the ones still being saved, are checked again next time
+            if (encodedChunk != null && encodedChunk.getChunk() == chunk) {
+                if (encodedChunk.getLightHash() != ((LightTrackingChunk) chunk).hashLight()) {
+                    // The world has to be saved anyway, so the rest of the chunks are checked while it's captured
+                    return true;
+                }
+
+                iterator.remove();
+            }
+        }
+
+        return false;
+    }
+
+    private long hashWorldData() throws IOException {
+        CompoundMap extraMap = new CompoundMap(extraData.getValue());
+        Tag<?> levelData = extraMap.get("LevelData");
+
+        if (levelData instanceof CompoundTag) {
+            CompoundMap levelDataMap = new CompoundMap(((CompoundTag) levelData).getValue());
+            levelDataMap.keySet().removeAll(TICKING_LEVEL_DATA);
+            extraMap.put(new CompoundTag("LevelData", levelDataMap));
+        }
+
+        FastByteArrayOutputStream outByteStream = new FastByteArrayOutputStream(4096);
+        serializeCompoundTag(outByteStream, new CompoundTag("", extraMap));
+        serializeCompoundTag(outByteStream, propertyMap.toCompound());
+        serializeCompoundTag(outByteStream, createMapsCompound(worldMaps));
+
+        return XXHash64.hash(outByteStream.getBuffer(), 0, outByteStream.size(), 0L);
+    }
+
+    long nextSnapshotSequence() {
+        return snapshotSequence.incrementAndGet();
+    }
+
+    /**
+     * Writes the data file produced by a snapshot through the loader. Saves can finish in a different
+     * order than their snapshots were captured, so the file isn't written if a newer snapshot has already
+     * been saved, as it would replace newer data with older one. It isn't written either if it's identical
+     * to the last file that has been written.
+     *
+     * @param sequence Sequence number of the snapshot.
+     * @param file     The data file.
+     * @return Whether or not the data file was written.
+     * @throws IOException if the data file could not be written.
+     */
+    boolean saveFile(long sequence, SerializedWorld file) throws IOException {
+        long fileHash = file.hash();
+
+        synchronized (fileLock) {
+            if (sequence <= savedSequence.get()) {
+                return false;
+            }
+
+            Long savedHash = savedFileHash.get();
+            boolean written = savedHash == null || savedHash != fileHash;
+
+            if (written) {
+                loader.saveWorld(name, file::writeTo, false);
+                SaveScheduler.onWorldSaved(this);
+            }
+
+            savedFileHash.set(fileHash);
+            savedSequence.set(sequence);
+
+            return written;
+        }
+    }
+
+    void onSaveFailed() {
+        savedFileHash.set(null);
+        forceNextSnapshot.set(true);
+    }
+
+    /**
+     * Copies a chunk into a snapshot. Chunks that haven't been marked as dirty since the
+     * last save, and whose light hasn't changed either, reuse their previous encoding instead,
+     * so only modified chunks have to be copied and encoded again. The light of a chunk can
+     * only change after a block around it has, so it's only hashed for chunks that are dirty
+     * or have been written recently enough to still be waiting for light updates. Every other
+     * chunk keeps the light hash of its encoding.
+     *
+     * @return The chunk snapshot, or {@code null} if the chunk is empty.
+     */
+    WorldSnapshot.ChunkSnapshot snapshotChunk(SlimeChunk chunk, byte worldVersion) {
+        if (chunk == null) {
+            return null;
+        }
+
+        long index = ChunkIndex.key(chunk.getX(), chunk.getZ());
+        boolean lightTracking = chunk instanceof LightTrackingChunk;
+        Long lightHash = null;
+
+        if (dirtyChunks.remove(index)) {
+            // Also drops any encoding cached while the chunk was being marked as dirty
+            encodedChunks.remove(index);
+        } else {
+            EncodedChunk encodedChunk = encodedChunks.get(index);
+
+            // The chunk object changes when the chunk gets loaded or replaced through updateChunk
+            if (encodedChunk != null && encodedChunk.getChunk() == chunk && encodedChunk.getWorldVersion() == worldVersion) {
+                boolean unsettled = lightTracking && unsettledLightChunks.contains(index);
+                lightHash = unsettled ? ((LightTrackingChunk) chunk).hashLight() : encodedChunk.getLightHash();
+
+                if (lightHash == encodedChunk.getLightHash()) {
+                    if (unsettled) {
+                        unsettledLightChunks.remove(index);
+                    }
+
+                    return new WorldSnapshot.ChunkSnapshot(chunk, null, encodedChunk.getData(), encodedChunk.getBlockStates(), false, lightHash,
+                            new ArrayList<>(chunk.getTileEntities()), new ArrayList<>(chunk.getEntities()));
+                }
+            }
+        }
+
+        if (lightHash == null) {
+            lightHash = lightTracking ? ((LightTrackingChunk) chunk).hashLight() : 0L;
+        }
+
+        // Lazy chunks that were never decoded are still the same they were when the world was loaded,
+        // entities included, so their encoding is written back as it is without parsing their entities
+        BlockStatesTable preloadedTable = preloadedBlockStates.get();
+
+        if (chunk instanceof LazySlimeChunk && preloadedTable != null && ((LazySlimeChunk) chunk).isEncodingReusable(worldVersion, preloadedTable.blockStates)) {
+            return new WorldSnapshot.ChunkSnapshot(chunk, null, ((LazySlimeChunk) chunk).getEncodedData(), preloadedTable.serializedStates,
+                    false, lightHash, null, null);
+        }
+
+        SlimeChunk copy = copyChunk(chunk);
+
+        if (lightTracking) {
+            for (int x = -1; x <= 1; x++) {
+                for (int z = -1; z <= 1; z++) {
+                    unsettledLightChunks.add(ChunkIndex.key(chunk.getX() + x, chunk.getZ() + z));
+                }
+            }
+        }
+
+        if (Arrays.stream(copy.getSections()).allMatch(Objects::isNull)) { // Remove empty chunks to save space
+            return null;
+        }
+
+        return new WorldSnapshot.ChunkSnapshot(chunk, copy, null, null, true, lightHash, copy.getTileEntities(), copy.getEntities());
+    }
+
+    private static SlimeChunk copyChunk(SlimeChunk chunk) {
+        if (chunk instanceof CraftSlimeChunk) { // Not backed by a loaded chunk, so it won't change while being saved
+            return chunk;
+        }
+
+        if (chunk instanceof LazySlimeChunk) {
+            return ((LazySlimeChunk) chunk).decode();
+        }
+
+        SlimeChunkSection[] sections = chunk.getSections();
+        SlimeChunkSection[] sectionsCopy = new SlimeChunkSection[sections.length];
+
+        for (int i = 0; i < sections.length; i++) {
+            SlimeChunkSection section = sections[i];
 
-        synchronized (chunks) {
-            sortedChunks = new ArrayList<>(chunks.values());
+            if (section == null) {
+                continue;
+            }
+
+            byte[][] serializedPalette = section instanceof CraftSlimeChunkSection ? ((CraftSlimeChunkSection) section).getSerializedPalette() : null;
+
+            if (serializedPalette != null) { // Palette entries are never modified, so they can be shared
+                sectionsCopy[i] = new CraftSlimeChunkSection(serializedPalette, section.getBlockStates().clone(),
+                        copyNibbleArray(section.getBlockLight()), copyNibbleArray(section.getSkyLight()));
+            } else {
+                sectionsCopy[i] = new CraftSlimeChunkSection(section.getBlocks() == null ? null : section.getBlocks().clone(),
+                        copyNibbleArray(section.getData()), section.getPalette(),
+                        section.getBlockStates() == null ? null : section.getBlockStates().clone(),
+                        copyNibbleArray(section.getBlockLight()), copyNibbleArray(section.getSkyLight()));
+            }
         }
 
-        sortedChunks.sort(Comparator.comparingLong(chunk -> (long) chunk.getZ() * Integer.MAX_VALUE + (long) chunk.getX()));
-        sortedChunks.removeIf(chunk -> chunk == null || Arrays.stream(chunk.getSections()).allMatch(Objects::isNull)); // Remove empty chunks to save space
+        return new CraftSlimeChunk(chunk.getWorldName(), chunk.getX(), chunk.getZ(), sectionsCopy, chunk.getHeightMaps().clone(),
+                chunk.getBiomes().clone(), new ArrayList<>(chunk.getTileEntities()), new ArrayList<>(chunk.getEntities()));
+    }
+
+    private static NibbleArray copyNibbleArray(NibbleArray array) {
+        return array == null ? null : array.copy();
+    }
 
+    CompoundTag snapshotExtraData() {
         // Store world properties
         if(!extraData.getValue().containsKey("properties")) {
             extraData.getValue().putIfAbsent("properties", propertyMap.toCompound());
@@ -134,105 +574,298 @@ public class CraftSlimeWorld implements SlimeWorld {
             extraData.getValue().replace("properties", propertyMap.toCompound());
         }
 
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
+        return extraData.clone();
+    }
+
+    /**
+     * Writes the data file of a snapshot into the given stream.
+     */
+    void serialize(WorldSnapshot snapshot, OutputStream out) throws IOException {
+        SerializedWorld file = encode(snapshot);
 
         try {
-            // File Header and Slime version
-            outStream.write(SlimeFormat.SLIME_HEADER);
-            outStream.write(SlimeFormat.SLIME_VERSION);
+            file.writeTo(out);
+        } finally {
+            file.release();
+        }
+    }
 
-            // World version
-            outStream.writeByte(version);
+    /**
+     * Encodes the data file of a snapshot. Chunks are split into batches that, along
+     * with the rest of the sections, get encoded and compressed in parallel inside
+     * reusable per-thread buffers. Only the compressed data is kept, so the uncompressed
+     * world never has to be held in memory. The returned file has to be released once
+     * it has been written.
+     */
+    SerializedWorld encode(WorldSnapshot snapshot) throws IOException {
+        List<WorldSnapshot.ChunkSnapshot> sortedChunks = snapshot.getChunks();
+        byte worldVersion = snapshot.getWorldVersion();
+        FastByteArrayOutputStream headerBytes = new FastByteArrayOutputStream(8192);
+        DataOutputStream outStream = new DataOutputStream(headerBytes);
+
+        // File Header and Slime version
+        outStream.write(SlimeFormat.SLIME_HEADER);
+        outStream.write(SlimeFormat.SLIME_VERSION);
+
+        // World version
+        outStream.writeByte(worldVersion);
+
+        // Zstd dictionary
+        ZstdDictionary dictionary = ZstdDictionaries.getDefaultDictionary();
+        int compressionLevel = propertyMap.getValue(COMPRESSION_LEVEL);
+        outStream.writeInt(dictionary == null ? 0 : dictionary.getId());
+
+        // Lowest chunk coordinates
+        int minX = sortedChunks.stream().mapToInt(WorldSnapshot.ChunkSnapshot::getX).min().orElse(0);
+        int minZ = sortedChunks.stream().mapToInt(WorldSnapshot.ChunkSnapshot::getZ).min().orElse(0);
+        int maxX = sortedChunks.stream().mapToInt(WorldSnapshot.ChunkSnapshot::getX).max().orElse(0);
+        int maxZ = sortedChunks.stream().mapToInt(WorldSnapshot.ChunkSnapshot::getZ).max().orElse(0);
+
+        outStream.writeShort(minX);
+        outStream.writeShort(minZ);
+
+        // Width and depth
+        int width = maxX - minX + 1;
+        int depth = maxZ - minZ + 1;
+
+        outStream.writeShort(width);
+        outStream.writeShort(depth);
+
+        // Chunk Bitmask
+        BitSet chunkBitset = new BitSet(width * depth);
+
+        for (WorldSnapshot.ChunkSnapshot chunk : sortedChunks) {
+            int bitsetIndex = (chunk.getZ() - minZ) * width + (chunk.getX() - minX);
+
+            chunkBitset.set(bitsetIndex, true);
+        }
 
-            // Lowest chunk coordinates
-            int minX = sortedChunks.stream().mapToInt(SlimeChunk::getX).min().orElse(0);
-            int minZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).min().orElse(0);
-            int maxX = sortedChunks.stream().mapToInt(SlimeChunk::getX).max().orElse(0);
-            int maxZ = sortedChunks.stream().mapToInt(SlimeChunk::getZ).max().orElse(0);
+        int chunkMaskSize = (int) Math.ceil((width * depth) / 8.0D);
+        writeBitSetAsBytes(outStream, chunkBitset, chunkMaskSize);
 
-            outStream.writeShort(minX);
-            outStream.writeShort(minZ);
+        // Chunks, encoded and compressed in batches. Each batch is an independent
+        // frame, so chunks can be read back without decompressing the whole world
+        List<List<WorldSnapshot.ChunkSnapshot>> batches = new ArrayList<>();
 
-            // Width and depth
-            int width = maxX - minX + 1;
-            int depth = maxZ - minZ + 1;
+        for (int i = 0; i < sortedChunks.size(); i += CHUNKS_PER_FRAME) {
+            batches.add(sortedChunks.subList(i, Math.min(i + CHUNKS_PER_FRAME, sortedChunks.size())));
+        }
 
-            outStream.writeShort(width);
-            outStream.writeShort(depth);
+        // Block state table, built from scratch from the block states the chunks use, so the ones
+        // that aren't used anymore are left out. The block states of every batch are listed in
+        // parallel, but added to the table in chunk order, so the table is the same on every save
+        List<CompletableFuture<List<byte[]>>> batchBlockStates = new ArrayList<>(batches.size());
+
+        for (List<WorldSnapshot.ChunkSnapshot> batch : batches) {
+            batchBlockStates.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return collectBlockStates(batch, worldVersion);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, SERIALIZATION_POOL));
+        }
+
+        WorldPalette palette = new WorldPalette();
+
+        for (CompletableFuture<List<byte[]>> blockStates : batchBlockStates) {
+            for (byte[] blockState : join(blockStates)) {
+                palette.getIndex(blockState);
+            }
+        }
+
+        CompoundTag paletteCompound = palette.toCompound();
+        CompletableFuture<CompressedData> paletteData = compressAsync(compressionLevel, dictionary, buffer -> serializeCompoundTag(buffer, paletteCompound));
+
+        List<CompletableFuture<CompressedData>> chunkFrames = new ArrayList<>(batches.size());
+        List<int[]> chunkLengths = new ArrayList<>(batches.size());
+
+        for (List<WorldSnapshot.ChunkSnapshot> batch : batches) {
+            int[] batchLengths = new int[batch.size()];
+            chunkLengths.add(batchLengths);
+            chunkFrames.add(compressAsync(compressionLevel, dictionary, buffer -> serializeChunkBatch(buffer, batch, batchLengths, palette, worldVersion)));
+        }
 
-            // Chunk Bitmask
-            BitSet chunkBitset = new BitSet(width * depth);
+        // Extra Tag
+        CompoundTag extraCompound = snapshot.getExtraData();
+        CompletableFuture<CompressedData> extra = compressAsync(compressionLevel, dictionary, buffer -> serializeCompoundTag(buffer, extraCompound));
 
-            for (SlimeChunk chunk : sortedChunks) {
-                int bitsetIndex = (chunk.getZ() - minZ) * width + (chunk.getX() - minX);
+        // World Maps
+        CompoundTag mapsCompound = createMapsCompound(snapshot.getWorldMaps());
+        CompletableFuture<CompressedData> maps = compressAsync(compressionLevel, dictionary, buffer -> serializeCompoundTag(buffer, mapsCompound));
 
-                chunkBitset.set(bitsetIndex, true);
+        // Every section is kept compressed, in the order it's written, until the file is released
+        List<CompletableFuture<CompressedData>> sections = new ArrayList<>(chunkFrames);
+        sections.add(paletteData);
+        sections.add(extra);
+        sections.add(maps);
+
+        SerializedWorld file = new SerializedWorld();
+        boolean encoded = false;
+
+        try {
+            List<CompressedData> chunkData = new ArrayList<>(chunkFrames.size());
+
+            for (CompletableFuture<CompressedData> future : chunkFrames) {
+                chunkData.add(join(future));
             }
 
-            int chunkMaskSize = (int) Math.ceil((width * depth) / 8.0D);
-            writeBitSetAsBytes(outStream, chunkBitset, chunkMaskSize);
+            // Chunk index: the size of every frame, and of every chunk inside its frame
+            outStream.writeInt(chunkData.size());
 
-            // Chunks
-            byte[] chunkData = serializeChunks(sortedChunks, version);
-            byte[] compressedChunkData = Zstd.compress(chunkData);
+            for (int i = 0; i < chunkData.size(); i++) {
+                outStream.writeInt(chunkLengths.get(i).length);
+                outStream.writeInt(chunkData.get(i).getLength());
+                outStream.writeInt(chunkData.get(i).getUncompressedLength());
+            }
 
-            outStream.writeInt(compressedChunkData.length);
-            outStream.writeInt(chunkData.length);
-            outStream.write(compressedChunkData);
+            for (int[] batchLengths : chunkLengths) {
+                for (int chunkLength : batchLengths) {
+                    outStream.writeInt(chunkLength);
+                }
+            }
 
-            // Tile Entities
-            List<CompoundTag> tileEntitiesList = sortedChunks.stream().flatMap(chunk -> chunk.getTileEntities().stream()).collect(Collectors.toList());
-            ListTag<CompoundTag> tileEntitiesNbtList = new ListTag<>("tiles", TagType.TAG_COMPOUND, tileEntitiesList);
-            CompoundTag tileEntitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(tileEntitiesNbtList)));
-            byte[] tileEntitiesData = serializeCompoundTag(tileEntitiesCompound);
-            byte[] compressedTileEntitiesData = Zstd.compress(tileEntitiesData);
+            // Block state table
+            CompressedData paletteSection = join(paletteData);
+            writeSectionLengths(outStream, paletteSection);
+            file.append(headerBytes.getBuffer(), headerBytes.size(), false);
+            file.append(paletteSection.getData(), paletteSection.getLength(), true);
 
-            outStream.writeInt(compressedTileEntitiesData.length);
-            outStream.writeInt(tileEntitiesData.length);
-            outStream.write(compressedTileEntitiesData);
+            for (CompressedData frame : chunkData) {
+                file.append(frame.getData(), frame.getLength(), true);
+            }
 
-            // Entities
-            List<CompoundTag> entitiesList = sortedChunks.stream().flatMap(chunk -> chunk.getEntities().stream()).collect(Collectors.toList());
+            appendSection(file, join(extra));
+            appendSection(file, join(maps));
+            encoded = true;
+
+            return file;
+        } finally {
+            if (!encoded) {
+                // Every section goes back to the pool, even the ones that were never added to
+                // the file because another one failed. Failed sections already gave theirs back
+                for (CompletableFuture<CompressedData> section : sections) {
+                    section.thenAccept(data -> BufferPool.release(data.getData()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes this world the same way {@link #serialize(OutputStream)} does, but hands every
+     * chunk, along with its entities, and NBT section over uncompressed and one by one, so they
+     * can be used as samples to train a zstd dictionary.
+     *
+     * @param consumer Consumer of the samples.
+     * @throws IOException if the world could not be encoded.
+     */
+    public void collectDictionarySamples(Consumer<byte[]> consumer) throws IOException {
+        List<SlimeChunk> chunkList = chunks.values();
+        chunkList.removeIf(chunk -> chunk == null || Arrays.stream(chunk.getSections()).allMatch(Objects::isNull));
+        FastByteArrayOutputStream buffer = new FastByteArrayOutputStream(16384);
+        WorldPalette samplePalette = new WorldPalette();
+
+        for (SlimeChunk chunk : chunkList) {
+            buffer.reset();
+            serializeChunks(buffer, Collections.singletonList(chunk), samplePalette, version);
+            consumer.accept(buffer.toByteArray());
+        }
 
-            outStream.writeBoolean(!entitiesList.isEmpty());
+        List<CompoundTag> compounds = Arrays.asList(samplePalette.toCompound(), extraData, createMapsCompound(worldMaps));
 
-            if (!entitiesList.isEmpty()) {
-                ListTag<CompoundTag> entitiesNbtList = new ListTag<>("entities", TagType.TAG_COMPOUND, entitiesList);
-                CompoundTag entitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList)));
-                byte[] entitiesData = serializeCompoundTag(entitiesCompound);
-                byte[] compressedEntitiesData = Zstd.compress(entitiesData);
+        for (CompoundTag compound : compounds) {
+            buffer.reset();
+            serializeCompoundTag(buffer, compound);
 
-                outStream.writeInt(compressedEntitiesData.length);
-                outStream.writeInt(entitiesData.length);
-                outStream.write(compressedEntitiesData);
+            if (buffer.size() > 0) {
+                consumer.accept(buffer.toByteArray());
             }
+        }
+    }
+
+    private static CompoundTag createEntityListCompound(String listName, List<CompoundTag> entities) {
+        if (entities.isEmpty()) {
+            return null;
+        }
+
+        ListTag<CompoundTag> entitiesNbtList = new ListTag<>(listName, TagType.TAG_COMPOUND, new ArrayList<>(entities));
 
-            // Extra Tag
-            byte[] extra = serializeCompoundTag(extraData);
-            byte[] compressedExtra = Zstd.compress(extra);
+        return new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList)));
+    }
+
+    private static CompoundTag createMapsCompound(List<CompoundTag> worldMaps) {
+        CompoundMap map = new CompoundMap();
+        map.put("maps", new ListTag<>("maps", TagType.TAG_COMPOUND, worldMaps));
+
+        return new CompoundTag("", map);
+    }
+
+    private static CompletableFuture<CompressedData> compressAsync(int level, ZstdDictionary dictionary, SectionWriter writer) {
+        return CompletableFuture.supplyAsync(() -> {
+            FastByteArrayOutputStream dataBuffer = DATA_BUFFER.get();
 
-            outStream.writeInt(compressedExtra.length);
-            outStream.writeInt(extra.length);
-            outStream.write(compressedExtra);
+            try {
+                dataBuffer.reset();
+                writer.write(dataBuffer);
 
-            // World Maps
-            CompoundMap map = new CompoundMap();
-            map.put("maps", new ListTag<>("maps", TagType.TAG_COMPOUND, worldMaps));
+                return compress(dataBuffer, level, dictionary);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                // Don't let a single huge world pin its buffer to this thread forever
+                dataBuffer.reset(MAX_RETAINED_BUFFER_SIZE);
+            }
+        }, SERIALIZATION_POOL);
+    }
 
-            CompoundTag mapsCompound = new CompoundTag("", map);
+    private static CompressedData compress(FastByteArrayOutputStream data, int level, ZstdDictionary dictionary) throws IOException {
+        // The compressed data goes back to the pool once it has been written
+        byte[] compressed = BufferPool.acquire(ZstdCodec.compressBound(data.size()));
 
-            byte[] mapArray = serializeCompoundTag(mapsCompound);
-            byte[] compressedMapArray = Zstd.compress(mapArray);
+        try {
+            int compressedLength = ZstdCodec.compress(compressed, 0, compressed.length, data.getBuffer(), 0, data.size(), level, dictionary);
 
-            outStream.writeInt(compressedMapArray.length);
-            outStream.writeInt(mapArray.length);
-            outStream.write(compressedMapArray);
-        } catch (IOException ex) { // Ignore
-            ex.printStackTrace();
+            return new CompressedData(compressed, compressedLength, data.size());
+        } catch (IOException ex) {
+            BufferPool.release(compressed);
+            throw ex;
         }
+    }
 
-        return outByteStream.toByteArray();
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw ex;
+        }
+    }
+
+    private static void writeSectionLengths(DataOutputStream outStream, CompressedData data) throws IOException {
+        outStream.writeInt(data.getLength());
+        outStream.writeInt(data.getUncompressedLength());
+    }
+
+    // Appends a section along with its compressed and uncompressed lengths
+    private static void appendSection(SerializedWorld file, CompressedData data) throws IOException {
+        FastByteArrayOutputStream lengthBytes = new FastByteArrayOutputStream(8);
+        writeSectionLengths(new DataOutputStream(lengthBytes), data);
+
+        file.append(lengthBytes.getBuffer(), lengthBytes.size(), false);
+        file.append(data.getData(), data.getLength(), true);
     }
 
     private static void writeBitSetAsBytes(DataOutputStream outStream, BitSet set, int fixedSize) throws IOException {
@@ -246,104 +879,352 @@ public class CraftSlimeWorld implements SlimeWorld {
         }
     }
 
-    private static byte[] serializeChunks(List<SlimeChunk> chunks, byte worldVersion) throws IOException {
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream(16384);
+    /**
+     * Lists the block states used by the palettes of a batch of chunks, in the order they're first used.
+     */
+    private static List<byte[]> collectBlockStates(List<WorldSnapshot.ChunkSnapshot> chunks, byte worldVersion) throws IOException {
+        List<byte[]> blockStates = new ArrayList<>();
+
+        if (worldVersion < 0x04) { // No palettes before 1.13
+            return blockStates;
+        }
+
+        Set<ByteBuffer> listedStates = new HashSet<>();
+        Consumer<byte[]> listState = blockState -> {
+            if (listedStates.add(ByteBuffer.wrap(blockState))) {
+                blockStates.add(blockState);
+            }
+        };
+
+        for (WorldSnapshot.ChunkSnapshot chunk : chunks) {
+            if (chunk.getEncoded() != null) {
+                byte[][] encodedStates = chunk.getEncodedBlockStates();
+                byte[] encoded = chunk.getEncoded();
+
+                remapPalettes(encoded, 0, encoded.length, null, index -> {
+                    listState.accept(getBlockState(encodedStates, index));
+
+                    return index;
+                });
+
+                continue;
+            }
+
+            for (SlimeChunkSection section : chunk.getChunk().getSections()) {
+                if (section == null) {
+                    continue;
+                }
+
+                byte[][] serializedPalette = section instanceof CraftSlimeChunkSection ? ((CraftSlimeChunkSection) section).getSerializedPalette() : null;
+
+                if (serializedPalette != null) {
+                    for (byte[] value : serializedPalette) {
+                        listState.accept(value);
+                    }
+                } else {
+                    for (CompoundTag value : section.getPalette().getValue()) {
+                        listState.accept(WorldPalette.serialize(value));
+                    }
+                }
+            }
+        }
+
+        return blockStates;
+    }
+
+    private static byte[] getBlockState(byte[][] blockStates, int index) throws IOException {
+        if (index < 0 || index >= blockStates.length) {
+            throw new IOException("Block state " + index + " is not in the block states table");
+        }
+
+        return blockStates[index];
+    }
+
+    private void serializeChunkBatch(FastByteArrayOutputStream outByteStream, List<WorldSnapshot.ChunkSnapshot> chunks,
+                                     int[] chunkLengths, WorldPalette palette, byte worldVersion) throws IOException {
         DataOutputStream outStream = new DataOutputStream(outByteStream);
+        NBTOutputStream nbtStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
 
-        for (SlimeChunk chunk : chunks) {
-            // Height Maps
-            if (worldVersion >= 0x04) {
-                byte[] heightMaps = serializeCompoundTag(chunk.getHeightMaps());
-                outStream.writeInt(heightMaps.length);
-                outStream.write(heightMaps);
+        for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+            WorldSnapshot.ChunkSnapshot chunk = chunks.get(chunkIndex);
+            int start = outByteStream.size();
+
+            if (chunk.getEncoded() != null) {
+                byte[] encoded = chunk.getEncoded();
+
+                if (worldVersion >= 0x04) { // Point the palettes to the block state table of this save
+                    byte[][] encodedStates = chunk.getEncodedBlockStates();
+                    remapPalettes(encoded, 0, encoded.length, outByteStream, index -> palette.getIndex(getBlockState(encodedStates, index)));
+                } else {
+                    outByteStream.write(encoded);
+                }
             } else {
-                int[] heightMap = chunk.getHeightMaps().getIntArrayValue("heightMap").get();
+                serializeChunk(outByteStream, outStream, nbtStream, chunk.getChunk(), palette, worldVersion);
 
-                for (int i = 0; i < 256; i++) {
-                    outStream.writeInt(heightMap[i]);
+                // Entities change without the chunk being marked as dirty, so they're left out of the cached encoding
+                if (chunk.isCacheable()) {
+                    encodedChunks.put(ChunkIndex.key(chunk.getX(), chunk.getZ()), cacheEncoding(chunk, outByteStream.getBuffer(), start,
+                            outByteStream.size() - start, palette, worldVersion));
                 }
             }
 
-            // Biomes
-            int[] biomes = chunk.getBiomes();
-            if (worldVersion >= 0x04) {
-                outStream.writeInt(biomes.length);
+            // Encodings reused from lazy chunks already contain their entities
+            if (chunk.getTileEntities() != null) {
+                serializeChunkEntities(outByteStream, outStream, nbtStream, chunk.getTileEntities(), chunk.getEntities());
             }
 
-            for (int biome : biomes) {
-                outStream.writeInt(biome);
-            }
+            chunkLengths[chunkIndex] = outByteStream.size() - start;
+        }
+    }
 
-            // Chunk sections
-            SlimeChunkSection[] sections = chunk.getSections();
-            BitSet sectionBitmask = new BitSet(16);
+    /**
+     * Copies the encoding of a chunk to be reused by the next saves. The block state table is
+     * rebuilt on every save, so the palettes of the copy reference a table of their own instead.
+     */
+    private static EncodedChunk cacheEncoding(WorldSnapshot.ChunkSnapshot chunk, byte[] buffer, int offset, int length,
+                                              WorldPalette palette, byte worldVersion) throws IOException {
+        if (worldVersion < 0x04) {
+            return new EncodedChunk(chunk.getSource(), worldVersion, chunk.getLightHash(), Arrays.copyOfRange(buffer, offset, offset + length), new byte[0][]);
+        }
 
-            for (int i = 0; i < sections.length; i++) {
-                sectionBitmask.set(i, sections[i] != null);
-            }
+        FastByteArrayOutputStream data = new FastByteArrayOutputStream(length);
+        List<byte[]> blockStates = new ArrayList<>();
+        Map<Integer, Integer> localIndices = new HashMap<>();
 
-            writeBitSetAsBytes(outStream, sectionBitmask, 2);
+        remapPalettes(buffer, offset, length, data, index -> localIndices.computeIfAbsent(index, key -> {
+            blockStates.add(palette.getSerializedState(key));
 
-            for (SlimeChunkSection section : sections) {
-                if (section == null) {
+            return blockStates.size() - 1;
+        }));
+
+        return new EncodedChunk(chunk.getSource(), worldVersion, chunk.getLightHash(), data.toByteArray(), blockStates.toArray(new byte[0][]));
+    }
+
+    /**
+     * Goes through an encoded chunk, passing the block state index of every palette entry of its sections
+     * to the given mapper. If an output stream is given, the chunk is copied into it, with every index
+     * replaced by the one returned by the mapper. Whatever comes after the sections is copied as it is.
+     */
+    private static void remapPalettes(byte[] data, int offset, int length, FastByteArrayOutputStream out, PaletteMapper mapper) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        int copiedUntil = offset;
+
+        try {
+            // Height Maps and Biomes
+            skip(buffer, buffer.getInt());
+            skip(buffer, buffer.getInt() * Integer.BYTES);
+
+            // Chunk sections
+            int sectionBitmask = (buffer.get() & 0xFF) | (buffer.get() & 0xFF) << 8;
+
+            for (int i = 0; i < 16; i++) {
+                if ((sectionBitmask & (1 << i)) == 0) {
                     continue;
                 }
 
-                // Block Light
-                boolean hasBlockLight = section.getBlockLight() != null;
-                outStream.writeBoolean(hasBlockLight);
+                skipLightArray(buffer);
 
-                if (hasBlockLight) {
-                    outStream.write(section.getBlockLight().getBacking());
-                }
+                int paletteLength = VarInts.read(buffer);
 
-                // Block Data
-                if (worldVersion >= 0x04) {
-                    // Palette
-                    List<CompoundTag> palette = section.getPalette().getValue();
-                    outStream.writeInt(palette.size());
+                if (out != null) {
+                    out.write(data, copiedUntil, buffer.position() - copiedUntil);
+                }
 
-                    for (CompoundTag value : palette) {
-                        byte[] serializedValue = serializeCompoundTag(value);
+                for (int index = 0; index < paletteLength; index++) {
+                    int newIndex = mapper.map(VarInts.read(buffer));
 
-                        outStream.writeInt(serializedValue.length);
-                        outStream.write(serializedValue);
+                    if (out != null) {
+                        VarInts.write(out, newIndex);
                     }
+                }
+
+                copiedUntil = buffer.position();
+
+                skip(buffer, buffer.getInt() * Long.BYTES);
+                skipLightArray(buffer);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new IOException("Encoded chunk is corrupted", ex);
+        }
 
-                    // Block states
-                    long[] blockStates = section.getBlockStates();
+        if (out != null) {
+            out.write(data, copiedUntil, offset + length - copiedUntil);
+        }
+    }
+
+    private static void skipLightArray(ByteBuffer buffer) {
+        int flag = buffer.get() & 0xFF;
 
-                    outStream.writeInt(blockStates.length);
+        if (flag != 0 && (flag & SlimeFormat.UNIFORM_LIGHT_FLAG) == 0) {
+            skip(buffer, 2048);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    private static void serializeChunks(FastByteArrayOutputStream outByteStream, List<SlimeChunk> chunks, WorldPalette worldPalette, byte worldVersion) throws IOException {
+        DataOutputStream outStream = new DataOutputStream(outByteStream);
+        NBTOutputStream nbtStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+
+        for (SlimeChunk chunk : chunks) {
+            serializeChunk(outByteStream, outStream, nbtStream, chunk, worldPalette, worldVersion);
+            serializeChunkEntities(outByteStream, outStream, nbtStream, chunk.getTileEntities(), chunk.getEntities());
+        }
+    }
+
+    private static void serializeChunk(FastByteArrayOutputStream outByteStream, DataOutputStream outStream, NBTOutputStream nbtStream,
+                                       SlimeChunk chunk, WorldPalette worldPalette, byte worldVersion) throws IOException {
+        // Height Maps
+        if (worldVersion >= 0x04) {
+            writeLengthPrefixedTag(outByteStream, outStream, nbtStream, chunk.getHeightMaps());
+        } else {
+            int[] heightMap = chunk.getHeightMaps().getIntArrayValue("heightMap").get();
+            outByteStream.writeInts(Arrays.copyOf(heightMap, 256));
+        }
+
+        // Biomes
+        int[] biomes = chunk.getBiomes();
+        if (worldVersion >= 0x04) {
+            outStream.writeInt(biomes.length);
+        }
+
+        outByteStream.writeInts(biomes);
+
+        // Chunk sections
+        SlimeChunkSection[] sections = chunk.getSections();
+        BitSet sectionBitmask = new BitSet(16);
+
+        for (int i = 0; i < sections.length; i++) {
+            sectionBitmask.set(i, sections[i] != null);
+        }
+
+        writeBitSetAsBytes(outStream, sectionBitmask, 2);
+
+        for (SlimeChunkSection section : sections) {
+            if (section == null) {
+                continue;
+            }
 
-                    for (long value : section.getBlockStates()) {
-                        outStream.writeLong(value);
+            // Block Light
+            writeLightArray(outStream, section.getBlockLight());
+
+            // Block Data
+            if (worldVersion >= 0x04) {
+                // Palette, as indices into the world's block state table
+                byte[][] serializedPalette = section instanceof CraftSlimeChunkSection ? ((CraftSlimeChunkSection) section).getSerializedPalette() : null;
+
+                if (serializedPalette != null) {
+                    VarInts.write(outByteStream, serializedPalette.length);
+
+                    for (byte[] value : serializedPalette) {
+                        VarInts.write(outByteStream, worldPalette.getIndex(value));
                     }
                 } else {
-                    outStream.write(section.getBlocks());
-                    outStream.write(section.getData().getBacking());
+                    List<CompoundTag> palette = section.getPalette().getValue();
+                    VarInts.write(outByteStream, palette.size());
+
+                    for (CompoundTag value : palette) {
+                        VarInts.write(outByteStream, worldPalette.getIndex(value));
+                    }
                 }
 
-                // Sky Light
-                boolean hasSkyLight = section.getSkyLight() != null;
-                outStream.writeBoolean(hasSkyLight);
+                // Block states
+                long[] blockStates = section.getBlockStates();
 
-                if (hasSkyLight) {
-                    outStream.write(section.getSkyLight().getBacking());
-                }
+                outStream.writeInt(blockStates.length);
+                outByteStream.writeLongs(blockStates);
+            } else {
+                outStream.write(section.getBlocks());
+                outStream.write(section.getData().getBacking());
             }
+
+            // Sky Light
+            writeLightArray(outStream, section.getSkyLight());
         }
+    }
 
-        return outByteStream.toByteArray();
+    private static void writeLightArray(DataOutputStream outStream, NibbleArray lightArray) throws IOException {
+        if (lightArray == null) {
+            outStream.writeByte(0);
+            return;
+        }
+
+        int uniformValue = lightArray.getUniformValue();
+
+        if (uniformValue != -1) { // Only the light level has to be stored
+            outStream.writeByte(SlimeFormat.UNIFORM_LIGHT_FLAG | uniformValue);
+        } else {
+            outStream.writeByte(1);
+            outStream.write(lightArray.getBacking());
+        }
+    }
+
+    private static void serializeChunkEntities(FastByteArrayOutputStream outByteStream, DataOutputStream outStream, NBTOutputStream nbtStream,
+                                               List<CompoundTag> tileEntities, List<CompoundTag> entities) throws IOException {
+        writeLengthPrefixedTag(outByteStream, outStream, nbtStream, createEntityListCompound("tiles", tileEntities));
+        writeLengthPrefixedTag(outByteStream, outStream, nbtStream, createEntityListCompound("entities", entities));
     }
 
-    private static byte[] serializeCompoundTag(CompoundTag tag) throws IOException {
+    private static void writeLengthPrefixedTag(FastByteArrayOutputStream outByteStream, DataOutputStream outStream,
+                                               NBTOutputStream nbtStream, CompoundTag tag) throws IOException {
+        int lengthIndex = outByteStream.size();
+        outStream.writeInt(0); // Filled in once the tag has been written
+
+        if (tag != null && !tag.getValue().isEmpty()) {
+            nbtStream.writeTag(tag);
+            outByteStream.setInt(lengthIndex, outByteStream.size() - lengthIndex - 4);
+        }
+    }
+
+    private static void serializeCompoundTag(FastByteArrayOutputStream outByteStream, CompoundTag tag) throws IOException {
         if (tag == null || tag.getValue().isEmpty()) {
-            return new byte[0];
+            return;
         }
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+
         NBTOutputStream outStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
         outStream.writeTag(tag);
+    }
 
-        return outByteStream.toByteArray();
+    @FunctionalInterface
+    private interface SectionWriter {
+
+        void write(FastByteArrayOutputStream outByteStream) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface PaletteMapper {
+
+        int map(int index) throws IOException;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class CompressedData {
+
+        private final byte[] data;
+        private final int length;
+        private final int uncompressedLength;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class EncodedChunk {
+
+        private final SlimeChunk chunk;
+        private final byte worldVersion;
+        // Hash of the light of the chunk when it was copied, as the light engine doesn't mark chunks as dirty
+        private final long lightHash;
+        private final byte[] data;
+        // Serialized block states the palettes of the encoding reference by their index
+        private final byte[][] blockStates;
+    }
+
+    @RequiredArgsConstructor
+    private static final class BlockStatesTable {
+
+        private final List<CompoundTag> blockStates;
+        private final byte[][] serializedStates;
     }
 }
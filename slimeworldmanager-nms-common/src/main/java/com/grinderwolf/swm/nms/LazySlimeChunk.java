@@ -0,0 +1,171 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chunk that's kept encoded, the way it was read from the world's data file,
+ * until its contents are needed for the first time. Data files older than v13
+ * store tile entities and entities apart from the chunk data, so those are
+ * available without decoding the chunk. Newer ones store them inside each
+ * chunk, so they aren't parsed either until the chunk gets decoded.
+ */
+public class LazySlimeChunk implements SlimeChunk {
+
+    // Last format version that changed the way chunks are encoded
+    private static final int CHUNK_ENCODING_VERSION = 14;
+
+    // First format version that stores entities inside each chunk
+    private static final int CHUNK_ENTITIES_VERSION = 13;
+
+    private final Source source;
+    @Getter
+    private final int x;
+    @Getter
+    private final int z;
+    private final int offset;
+    private final int length;
+
+    // Only used if the entities are stored apart from the chunk data
+    private final List<CompoundTag> tileEntities = new ArrayList<>();
+    private final List<CompoundTag> entities = new ArrayList<>();
+
+    private volatile CraftSlimeChunk decodedChunk;
+
+    public LazySlimeChunk(Source source, int x, int z, int offset, int length) {
+        this.source = source;
+        this.x = x;
+        this.z = z;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Decodes this chunk, unless it's been decoded already. The
+     * chunk is only decoded once, no matter how many threads ask for it.
+     *
+     * @return The decoded chunk.
+     * @throws UncheckedIOException if the chunk data is corrupted.
+     */
+    public CraftSlimeChunk decode() {
+        CraftSlimeChunk chunk = decodedChunk;
+
+        if (chunk == null) {
+            synchronized (this) {
+                chunk = decodedChunk;
+
+                if (chunk == null) {
+                    SlimeChunk decoded;
+
+                    try {
+                        decoded = source.decoder.decode(ByteBuffer.wrap(source.data, offset, length), x, z);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Failed to decode chunk (" + x + ", " + z + ") of world " + source.worldName, ex);
+                    }
+
+                    boolean chunkEntities = hasChunkEntities();
+                    chunk = new CraftSlimeChunk(source.worldName, x, z, decoded.getSections(), decoded.getHeightMaps(), decoded.getBiomes(),
+                            chunkEntities ? decoded.getTileEntities() : tileEntities, chunkEntities ? decoded.getEntities() : entities);
+                    decodedChunk = chunk;
+                }
+            }
+        }
+
+        return chunk;
+    }
+
+    public boolean isDecoded() {
+        return decodedChunk != null;
+    }
+
+    private boolean hasChunkEntities() {
+        return source.version >= CHUNK_ENTITIES_VERSION;
+    }
+
+    /**
+     * Returns whether or not the data this chunk was read from can be written back as it
+     * is. That's only the case if the chunk hasn't been decoded, as it could've been modified
+     * then, and if the data is encoded just like the current version would encode it.
+     *
+     * @param worldVersion The world version the chunk is going to be written with.
+     * @param blockStates  The block states table the world was loaded with.
+     * @return Whether or not the encoded data can be reused.
+     */
+    boolean isEncodingReusable(byte worldVersion, List<CompoundTag> blockStates) {
+        return decodedChunk == null && source.version >= CHUNK_ENCODING_VERSION
+                && source.worldVersion == worldVersion && source.blockStates == blockStates;
+    }
+
+    int getEncodedLength() {
+        return length;
+    }
+
+    byte[] getEncodedData() {
+        return Arrays.copyOfRange(source.data, offset, offset + length);
+    }
+
+    @Override
+    public String getWorldName() {
+        return source.worldName;
+    }
+
+    @Override
+    public SlimeChunkSection[] getSections() {
+        return decode().getSections();
+    }
+
+    @Override
+    public CompoundTag getHeightMaps() {
+        return decode().getHeightMaps();
+    }
+
+    @Override
+    public int[] getBiomes() {
+        return decode().getBiomes();
+    }
+
+    @Override
+    public List<CompoundTag> getTileEntities() {
+        return hasChunkEntities() ? decode().getTileEntities() : tileEntities;
+    }
+
+    @Override
+    public List<CompoundTag> getEntities() {
+        return hasChunkEntities() ? decode().getEntities() : entities;
+    }
+
+    /**
+     * Chunk data shared by every lazy chunk of a world.
+     */
+    @RequiredArgsConstructor
+    public static class Source {
+
+        private final String worldName;
+
+        // Decompressed chunk data, as stored in the data file
+        private final byte[] data;
+
+        // Versions and block states table the chunk data is encoded with
+        private final int version;
+        private final byte worldVersion;
+        private final List<CompoundTag> blockStates;
+
+        private final Decoder decoder;
+    }
+
+    @FunctionalInterface
+    public interface Decoder {
+
+        SlimeChunk decode(ByteBuffer buffer, int x, int z) throws IOException;
+    }
+}
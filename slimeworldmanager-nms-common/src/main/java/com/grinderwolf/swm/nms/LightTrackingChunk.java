@@ -0,0 +1,34 @@
+package com.grinderwolf.swm.nms;
+
+import com.grinderwolf.swm.nms.utils.XXHash64;
+
+/**
+ * Chunk whose light is kept by the server's light engine. Light updates land
+ * on their own, some ticks after the blocks that caused them changed, and without
+ * the chunk being marked as dirty, so encodings of these chunks are only reused
+ * as long as the hash of their light stays the same.
+ */
+public interface LightTrackingChunk {
+
+    // Light arrays that are not there are hashed as this value
+    long MISSING_ARRAY_HASH = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Returns a hash of the block and sky light of every section of this
+     * chunk, as stored by the light engine. Must be called from the main thread.
+     *
+     * @return The hash of the light of the chunk.
+     */
+    long hashLight();
+
+    /**
+     * Adds a light array to a hash.
+     *
+     * @param array The light array, or {@code null} if the light engine doesn't have it.
+     * @param hash  The hash of the previous arrays.
+     * @return The combined hash.
+     */
+    static long hashLightArray(byte[] array, long hash) {
+        return array == null ? hash * 31 + MISSING_ARRAY_HASH : XXHash64.hash(array, 0, array.length, hash);
+    }
+}
@@ -0,0 +1,294 @@
+package com.grinderwolf.swm.nms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Queue of the saves of every world. Each world has at most one pending
+ * save: requesting a save while another one is still waiting replaces it,
+ * as the newer one already contains everything the older one would write.
+ * Pending saves are started by priority and then by age, no more than one
+ * at a time per world and {@link #getMaxSavesPerLoader()} at a time per loader,
+ * so a slow data source can't take over every saving thread.
+ */
+public class SaveScheduler {
+
+    private static final int DEFAULT_SAVER_THREADS = 4;
+
+    private static final ThreadPoolExecutor SAVER_SERVICE = (ThreadPoolExecutor) Executors.newFixedThreadPool(DEFAULT_SAVER_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("SWM Pool Thread #%1$d").build());
+
+    /** Max amount of saves of worlds from the same loader running at the same time **/
+    @Getter
+    private static volatile int maxSavesPerLoader = 2;
+
+    private static final Object lock = new Object();
+    private static final NavigableSet<SaveRequest> queue = new TreeSet<>(Comparator.comparing((SaveRequest request) -> request.priority)
+            .thenComparingLong(request -> request.sequence));
+    private static final Map<CraftSlimeWorld, SaveRequest> pendingSaves = new IdentityHashMap<>();
+    private static final Map<CraftSlimeWorld, Boolean> runningSaves = new IdentityHashMap<>();
+    private static final Map<SlimeLoader, Integer> loaderSaves = new IdentityHashMap<>();
+    private static long nextSequence;
+
+    private static final LongAdder startedSaves = new LongAdder();
+    private static final LongAdder completedSaves = new LongAdder();
+    private static final LongAdder coalescedSaves = new LongAdder();
+    private static final LongAdder totalWaitTime = new LongAdder();
+    private static final AtomicLong maxWaitTime = new AtomicLong();
+
+    /** Called with every world whose data file has been written, from the thread that wrote it **/
+    @Setter
+    private static volatile Consumer<CraftSlimeWorld> saveListener;
+
+    /**
+     * Sets the amount of threads saves are run on.
+     *
+     * @param threads The amount of threads.
+     */
+    public static void setSaverThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid amount of saver threads " + threads);
+        }
+
+        // The core pool size can never be over the max pool size, so the one that shrinks goes first
+        if (threads > SAVER_SERVICE.getMaximumPoolSize()) {
+            SAVER_SERVICE.setMaximumPoolSize(threads);
+            SAVER_SERVICE.setCorePoolSize(threads);
+        } else {
+            SAVER_SERVICE.setCorePoolSize(threads);
+            SAVER_SERVICE.setMaximumPoolSize(threads);
+        }
+    }
+
+    public static int getSaverThreads() {
+        return SAVER_SERVICE.getMaximumPoolSize();
+    }
+
+    /**
+     * Sets the max amount of saves of worlds from the same loader running at the same time.
+     *
+     * @param maxSaves The max amount of saves.
+     */
+    public static void setMaxSavesPerLoader(int maxSaves) {
+        if (maxSaves <= 0) {
+            throw new IllegalArgumentException("Invalid max amount of saves per loader " + maxSaves);
+        }
+
+        synchronized (lock) {
+            maxSavesPerLoader = maxSaves;
+            dispatch();
+        }
+    }
+
+    /**
+     * Queues a save of the given world. If the world already has a pending
+     * save, it's replaced by this one, keeping the highest priority of both
+     * and the place in the queue of the oldest one.
+     *
+     * @param world    The world to save.
+     * @param priority Priority of the save.
+     * @param task     Task that saves the world.
+     */
+    public static void submit(CraftSlimeWorld world, Priority priority, Runnable task) {
+        synchronized (lock) {
+            SaveRequest previous = pendingSaves.get(world);
+            SaveRequest request;
+
+            if (previous != null) {
+                queue.remove(previous);
+                coalescedSaves.increment();
+
+                Priority newPriority = priority.compareTo(previous.priority) < 0 ? priority : previous.priority;
+                request = new SaveRequest(world, newPriority, task, previous.sequence, previous.requestTime);
+            } else {
+                request = new SaveRequest(world, priority, task, nextSequence++, System.nanoTime());
+            }
+
+            pendingSaves.put(world, request);
+            queue.add(request);
+            dispatch();
+        }
+    }
+
+    /**
+     * Saves the given world on the calling thread, dropping its pending save, if any.
+     * Used when the world has to be saved right away, like when the server is stopping,
+     * so it skips the queue altogether. If a save of the world has already been started,
+     * it waits for it to finish first, and no other save of the world is started until
+     * this one is done, so an older save can never run after this one.
+     *
+     * @param world The world to save.
+     * @param task  Task that saves the world.
+     */
+    public static void saveNow(CraftSlimeWorld world, Runnable task) {
+        synchronized (lock) {
+            SaveRequest previous = pendingSaves.remove(world);
+
+            if (previous != null) {
+                queue.remove(previous);
+                coalescedSaves.increment();
+            }
+
+            boolean interrupted = false;
+
+            while (runningSaves.containsKey(world)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            runningSaves.put(world, true);
+        }
+
+        try {
+            task.run();
+        } finally {
+            completedSaves.increment();
+
+            synchronized (lock) {
+                runningSaves.remove(world);
+                dispatch();
+            }
+        }
+    }
+
+    // Has to be called while holding the lock
+    private static void dispatch() {
+        Iterator<SaveRequest> iterator = queue.iterator();
+
+        while (iterator.hasNext()) {
+            SaveRequest request = iterator.next();
+            CraftSlimeWorld world = request.world;
+            SlimeLoader loader = world.getLoader();
+
+            if (runningSaves.containsKey(world) || loaderSaves.getOrDefault(loader, 0) >= maxSavesPerLoader) {
+                continue;
+            }
+
+            iterator.remove();
+            pendingSaves.remove(world);
+            runningSaves.put(world, true);
+            loaderSaves.merge(loader, 1, Integer::sum);
+
+            long waitTime = System.nanoTime() - request.requestTime;
+            startedSaves.increment();
+            totalWaitTime.add(waitTime);
+            maxWaitTime.accumulateAndGet(waitTime, Math::max);
+
+            SAVER_SERVICE.execute(() -> run(request, loader));
+        }
+    }
+
+    private static void run(SaveRequest request, SlimeLoader loader) {
+        try {
+            request.task.run();
+        } finally {
+            completedSaves.increment();
+
+            synchronized (lock) {
+                runningSaves.remove(request.world);
+                loaderSaves.computeIfPresent(loader, (key, saves) -> saves > 1 ? saves - 1 : null);
+                lock.notifyAll();
+                dispatch();
+            }
+        }
+    }
+
+    static void onWorldSaved(CraftSlimeWorld world) {
+        Consumer<CraftSlimeWorld> listener = saveListener;
+
+        if (listener != null) {
+            try {
+                listener.accept(world);
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+
+    public static int getQueuedSaves() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public static int getRunningSaves() {
+        synchronized (lock) {
+            return runningSaves.size();
+        }
+    }
+
+    public static long getCompletedSaves() {
+        return completedSaves.sum();
+    }
+
+    public static long getCoalescedSaves() {
+        return coalescedSaves.sum();
+    }
+
+    /**
+     * Returns the average time saves have spent in the queue before being started.
+     *
+     * @return The average wait time, in nanoseconds.
+     */
+    public static long getAverageWaitTime() {
+        long saves = startedSaves.sum();
+
+        return saves == 0 ? 0 : totalWaitTime.sum() / saves;
+    }
+
+    /**
+     * Returns the longest time a save has spent in the queue before being started.
+     *
+     * @return The max wait time, in nanoseconds.
+     */
+    public static long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    public enum Priority {
+
+        /** Saves requested explicitly, like the ones made when a world gets unloaded or by {@code /save-all}. */
+        FORCED,
+        /** Periodic saves made by the server. */
+        AUTOSAVE
+
+    }
+
+    private static final class SaveRequest {
+
+        private final CraftSlimeWorld world;
+        private final Priority priority;
+        private final Runnable task;
+        private final long sequence;
+        private final long requestTime;
+
+        private SaveRequest(CraftSlimeWorld world, Priority priority, Runnable task, long sequence, long requestTime) {
+            this.world = world;
+            this.priority = priority;
+            this.task = task;
+            this.sequence = sequence;
+            this.requestTime = requestTime;
+        }
+    }
+}
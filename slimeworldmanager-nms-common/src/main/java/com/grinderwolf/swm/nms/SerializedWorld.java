@@ -0,0 +1,87 @@
+package com.grinderwolf.swm.nms;
+
+import com.grinderwolf.swm.nms.utils.BufferPool;
+import com.grinderwolf.swm.nms.utils.XXHash64;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data file of a world, kept as the parts it's made of, most of them compressed sections,
+ * instead of being copied into a single array before being written. The chunk index comes
+ * before the chunk frames and holds their compressed sizes, so every frame has to be
+ * compressed before the file can be written. The file is never streamed while it's encoded,
+ * but it's only held in memory once, in its compressed form.
+ */
+final class SerializedWorld {
+
+    private final List<Part> parts = new ArrayList<>();
+    private boolean released;
+
+    /**
+     * Appends the given bytes to the file.
+     *
+     * @param data   Array holding the bytes.
+     * @param length Amount of bytes, starting at the beginning of the array.
+     * @param pooled Whether or not the array goes back to the {@link BufferPool} once the file is released.
+     */
+    void append(byte[] data, int length, boolean pooled) {
+        parts.add(new Part(data, length, pooled));
+    }
+
+    /**
+     * Returns a hash of the whole file. Files with the same contents always have the same hash.
+     *
+     * @return The hash of the file.
+     */
+    long hash() {
+        long hash = 0L;
+
+        for (Part part : parts) {
+            hash = XXHash64.hash(part.data, 0, part.length, hash);
+        }
+
+        return hash;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        if (released) {
+            throw new IllegalStateException("The world file has already been released");
+        }
+
+        for (Part part : parts) {
+            out.write(part.data, 0, part.length);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Gives the pooled arrays of this file back to the {@link BufferPool}.
+     * The file can't be written anymore after this.
+     */
+    void release() {
+        if (released) {
+            return;
+        }
+
+        released = true;
+
+        for (Part part : parts) {
+            if (part.pooled) {
+                BufferPool.release(part.data);
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Part {
+
+        private final byte[] data;
+        private final int length;
+        private final boolean pooled;
+    }
+}
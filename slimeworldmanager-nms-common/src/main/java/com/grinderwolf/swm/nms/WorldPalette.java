@@ -0,0 +1,145 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.TagType;
+import com.flowpowered.nbt.stream.NBTInputStream;
+import com.flowpowered.nbt.stream.NBTOutputStream;
+import com.grinderwolf.swm.nms.utils.FastByteArrayOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the block states used by a world's data file. Chunk sections
+ * reference their palette entries by their index inside this table, so each
+ * block state is only stored once per data file. Indices never change once
+ * they've been handed out, and the table is safe to use from multiple threads.
+ */
+public class WorldPalette {
+
+    private static final ThreadLocal<FastByteArrayOutputStream> KEY_BUFFER = ThreadLocal.withInitial(() -> new FastByteArrayOutputStream(256));
+
+    // Block states are looked up by their serialized NBT, as that's the format they're stored in
+    private final Map<ByteBuffer, Integer> indices = new ConcurrentHashMap<>();
+    private final List<CompoundTag> states = new ArrayList<>();
+    private final List<byte[]> serializedStates = new ArrayList<>();
+
+    /**
+     * Returns the index of a block state, adding it to the table if it's not there yet.
+     *
+     * @param state The block state.
+     * @return The index of the block state.
+     * @throws IOException if the block state could not be serialized.
+     */
+    public int getIndex(CompoundTag state) throws IOException {
+        FastByteArrayOutputStream keyBuffer = KEY_BUFFER.get();
+        keyBuffer.reset();
+
+        NBTOutputStream nbtStream = new NBTOutputStream(keyBuffer, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+        nbtStream.writeTag(state);
+
+        return getIndex(ByteBuffer.wrap(keyBuffer.getBuffer(), 0, keyBuffer.size()), state);
+    }
+
+    /**
+     * Serializes a block state the same way this table stores it.
+     *
+     * @param state The block state.
+     * @return The serialized block state.
+     * @throws IOException if the block state could not be serialized.
+     */
+    public static byte[] serialize(CompoundTag state) throws IOException {
+        FastByteArrayOutputStream keyBuffer = new FastByteArrayOutputStream(256);
+
+        NBTOutputStream nbtStream = new NBTOutputStream(keyBuffer, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+        nbtStream.writeTag(state);
+
+        return keyBuffer.toByteArray();
+    }
+
+    /**
+     * Returns the index of a block state that's already been serialized as an NBT compound
+     * named "", adding it to the table if it's not there yet. The block state is only parsed
+     * if it has to be added to the table.
+     *
+     * @param serializedState The serialized block state. It must not be modified afterwards.
+     * @return The index of the block state.
+     * @throws IOException if the block state could not be parsed.
+     */
+    public int getIndex(byte[] serializedState) throws IOException {
+        return getIndex(ByteBuffer.wrap(serializedState), null);
+    }
+
+    private int getIndex(ByteBuffer key, CompoundTag state) throws IOException {
+        Integer index = indices.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (states) {
+            index = indices.get(key);
+
+            if (index == null) {
+                // The key might be backed by a reused buffer
+                byte[] keyBytes = new byte[key.remaining()];
+                key.duplicate().get(keyBytes);
+
+                if (state == null) {
+                    NBTInputStream nbtStream = new NBTInputStream(new ByteArrayInputStream(keyBytes), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+                    state = (CompoundTag) nbtStream.readTag();
+                }
+
+                index = states.size();
+                states.add(state);
+                serializedStates.add(keyBytes);
+                indices.put(ByteBuffer.wrap(keyBytes), index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Returns a block state of this table, serialized as an NBT compound named "".
+     *
+     * @param index The index of the block state.
+     * @return The serialized block state. It must not be modified.
+     */
+    public byte[] getSerializedState(int index) {
+        synchronized (states) {
+            return serializedStates.get(index);
+        }
+    }
+
+    /**
+     * Returns the block states of this table as a compound, in the format they're stored in
+     * the world's data file. Block states added after calling this method are not included.
+     *
+     * @return The block states compound, or {@code null} if the table is empty.
+     */
+    public CompoundTag toCompound() {
+        List<CompoundTag> stateList;
+
+        synchronized (states) {
+            if (states.isEmpty()) {
+                return null;
+            }
+
+            stateList = new ArrayList<>(states);
+        }
+
+        ListTag<CompoundTag> statesTag = new ListTag<>("blockStates", TagType.TAG_COMPOUND, stateList);
+
+        return new CompoundTag("", new CompoundMap(Collections.singletonList(statesTag)));
+    }
+}
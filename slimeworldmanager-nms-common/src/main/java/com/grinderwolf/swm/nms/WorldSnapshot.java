@@ -0,0 +1,174 @@
+package com.grinderwolf.swm.nms;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.grinderwolf.swm.api.world.SlimeChunk;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy of a world's data, taken so the world can be encoded and saved from
+ * another thread while it keeps changing. Loaded chunks are read straight
+ * from the server, so the snapshot has to be captured on the main thread.
+ * Chunks whose previous encoding is still valid are not copied at all.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class WorldSnapshot {
+
+    /**
+     * Time spent capturing a snapshot on every tick
+     * when it's spread across several ticks.
+     */
+    public static final long DEFAULT_TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final CraftSlimeWorld world;
+    private final byte worldVersion;
+
+    @Getter(AccessLevel.NONE)
+    private final List<SlimeChunk> pendingChunks;
+    @Getter(AccessLevel.NONE)
+    private int pendingIndex;
+
+    private final List<ChunkSnapshot> chunks = new ArrayList<>();
+    private CompoundTag extraData;
+    private List<CompoundTag> worldMaps;
+    // Increases with every snapshot of the world, in the order they're captured
+    private long sequence;
+
+    WorldSnapshot(CraftSlimeWorld world, List<SlimeChunk> pendingChunks, byte worldVersion) {
+        this.world = world;
+        this.pendingChunks = pendingChunks;
+        this.worldVersion = worldVersion;
+    }
+
+    /**
+     * Copies as many chunks as possible within the given time. Has to
+     * be called from the main thread until it returns {@code true}.
+     *
+     * @param budgetNanos Max time to spend, in nanoseconds.
+     * @return Whether or not the snapshot is complete.
+     */
+    public boolean capture(long budgetNanos) {
+        long start = System.nanoTime();
+
+        while (pendingIndex < pendingChunks.size()) {
+            ChunkSnapshot chunk = world.snapshotChunk(pendingChunks.get(pendingIndex++), worldVersion);
+
+            if (chunk != null) {
+                chunks.add(chunk);
+            }
+
+            if (System.nanoTime() - start >= budgetNanos && pendingIndex < pendingChunks.size()) {
+                return false;
+            }
+        }
+
+        if (extraData == null) {
+            extraData = world.snapshotExtraData();
+            worldMaps = new ArrayList<>(world.getWorldMaps());
+            sequence = world.nextSnapshotSequence();
+        }
+
+        return true;
+    }
+
+    /**
+     * Captures this snapshot on the main thread, spending at most {@code budgetNanos}
+     * on every tick, and runs the given callback once it's complete. Must be called
+     * from the main thread.
+     *
+     * @param budgetNanos Max time to spend on every tick, in nanoseconds.
+     * @param callback    Callback to run on the main thread once the snapshot is complete.
+     */
+    public void captureAcrossTicks(long budgetNanos, Runnable callback) {
+        if (capture(budgetNanos)) {
+            callback.run();
+        } else {
+            Plugin plugin = Bukkit.getPluginManager().getPlugin("SlimeWorldManager");
+            Bukkit.getScheduler().runTask(plugin, () -> captureAcrossTicks(budgetNanos, callback));
+        }
+    }
+
+    /**
+     * Writes the data file of the world, as it was when this snapshot was
+     * captured, into the given stream. Safe to call from any thread.
+     *
+     * @param out The stream to write the data file to.
+     * @throws IOException if the stream could not be written.
+     */
+    public void write(OutputStream out) throws IOException {
+        checkCaptured();
+        world.serialize(this, out);
+    }
+
+    private void checkCaptured() {
+        if (extraData == null) {
+            throw new IllegalStateException("The snapshot of world " + world.getName() + " hasn't been captured yet");
+        }
+    }
+
+    /**
+     * Saves the world, as it was when this snapshot was captured, through its loader.
+     * The data file is hashed first, and isn't written if it's identical to the one
+     * written by the last save, or if a snapshot captured after this one has already
+     * been saved. As the file has to be hashed before being written, it's fully encoded
+     * first, but only its compressed sections are kept. Safe to call from any thread.
+     *
+     * @return Whether or not the data file was written.
+     * @throws IOException if the world could not be saved.
+     */
+    public boolean save() throws IOException {
+        checkCaptured();
+
+        try {
+            SerializedWorld file = world.encode(this);
+
+            try {
+                return world.saveFile(sequence, file);
+            } finally {
+                file.release();
+            }
+        } catch (IOException | RuntimeException ex) {
+            world.onSaveFailed();
+            throw ex;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static final class ChunkSnapshot {
+
+        // The chunk the snapshot was taken from
+        private final SlimeChunk source;
+
+        // Either a detached copy of the chunk, or its previous encoding
+        private final SlimeChunk chunk;
+        private final byte[] encoded;
+        // Serialized block states the palettes of the previous encoding reference by their index
+        private final byte[][] encodedBlockStates;
+
+        // Whether the encoding of the copy may be reused by the next saves
+        private final boolean cacheable;
+        private final long lightHash;
+
+        // Entities of the chunk, or null if its previous encoding already contains them
+        private final List<CompoundTag> tileEntities;
+        private final List<CompoundTag> entities;
+
+        int getX() {
+            return source.getX();
+        }
+
+        int getZ() {
+            return source.getZ();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.grinderwolf.swm.nms.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entry point for every zstd operation done on world data. Each thread keeps
+ * its own compression and decompression contexts, which are reused for as long
+ * as the compression level and dictionary they're set up with don't change,
+ * instead of creating new native contexts on every call.
+ */
+public class ZstdCodec {
+
+    public static final int DEFAULT_LEVEL = 3; // Same as Zstd.compress(byte[])
+
+    private static final ThreadLocal<CompressContext> compressContexts = ThreadLocal.withInitial(CompressContext::new);
+    private static final ThreadLocal<DecompressContext> decompressContexts = ThreadLocal.withInitial(DecompressContext::new);
+
+    private static final LongAdder createdContexts = new LongAdder();
+    private static final LongAdder compressedBytes = new LongAdder();
+    private static final LongAdder decompressedBytes = new LongAdder();
+
+    public static int compressBound(int length) {
+        return (int) Zstd.compressBound(length);
+    }
+
+    /**
+     * Compresses a single zstd frame.
+     *
+     * @return The length of the compressed frame.
+     * @throws IOException if the data could not be compressed.
+     */
+    public static int compress(byte[] dst, int dstOffset, int dstLength, byte[] src, int srcOffset, int srcLength,
+                               int level, ZstdDictionary dictionary) throws IOException {
+        ZstdCompressCtx context = compressContexts.get().get(level, dictionary);
+
+        try {
+            int compressedLength = context.compressByteArray(dst, dstOffset, dstLength, src, srcOffset, srcLength);
+            compressedBytes.add(srcLength);
+
+            return compressedLength;
+        } catch (ZstdException ex) {
+            throw new IOException("Failed to compress world data: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Decompresses one or more concatenated zstd frames.
+     *
+     * @return The length of the decompressed data.
+     * @throws IOException if the data could not be decompressed.
+     */
+    public static int decompress(byte[] dst, int dstOffset, int dstLength, byte[] src, int srcOffset, int srcLength,
+                                 ZstdDictionary dictionary) throws IOException {
+        ZstdDecompressCtx context = decompressContexts.get().get(dictionary);
+
+        try {
+            int decompressedLength = context.decompressByteArray(dst, dstOffset, dstLength, src, srcOffset, srcLength);
+            decompressedBytes.add(decompressedLength);
+
+            return decompressedLength;
+        } catch (ZstdException ex) {
+            throw new IOException("Failed to decompress world data: " + ex.getMessage(), ex);
+        }
+    }
+
+    public static long getCreatedContexts() {
+        return createdContexts.sum();
+    }
+
+    public static long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public static long getDecompressedBytes() {
+        return decompressedBytes.sum();
+    }
+
+    private static class CompressContext {
+
+        private ZstdCompressCtx context;
+        private int level;
+        private ZstdDictionary dictionary;
+
+        private ZstdCompressCtx get(int level, ZstdDictionary dictionary) {
+            if (context == null || this.level != level || this.dictionary != dictionary) {
+                if (context != null) {
+                    context.close();
+                }
+
+                context = new ZstdCompressCtx();
+                context.setLevel(level);
+
+                if (dictionary != null) {
+                    context.loadDict(dictionary.getCompressDictionary(level));
+                }
+
+                this.level = level;
+                this.dictionary = dictionary;
+                createdContexts.increment();
+            }
+
+            return context;
+        }
+    }
+
+    private static class DecompressContext {
+
+        private ZstdDecompressCtx context;
+        private ZstdDictionary dictionary;
+
+        private ZstdDecompressCtx get(ZstdDictionary dictionary) {
+            if (context == null || this.dictionary != dictionary) {
+                if (context != null) {
+                    context.close();
+                }
+
+                context = new ZstdDecompressCtx();
+
+                if (dictionary != null) {
+                    context.loadDict(dictionary.getDecompressDictionary());
+                }
+
+                this.dictionary = dictionary;
+                createdContexts.increment();
+            }
+
+            return context;
+        }
+    }
+}
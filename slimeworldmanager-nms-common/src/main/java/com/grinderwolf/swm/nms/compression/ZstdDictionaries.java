@@ -0,0 +1,40 @@
+package com.grinderwolf.swm.nms.compression;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of every zstd dictionary available to compress and decompress worlds.
+ */
+public class ZstdDictionaries {
+
+    private static final Map<Integer, ZstdDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    /** Dictionary used to compress worlds when they're saved, or {@code null} to compress them without one **/
+    @Getter
+    @Setter
+    private static volatile ZstdDictionary defaultDictionary;
+
+    public static void register(ZstdDictionary dictionary) {
+        ZstdDictionary oldDictionary = dictionaries.putIfAbsent(dictionary.getId(), dictionary);
+
+        if (oldDictionary != null && !Arrays.equals(oldDictionary.getData(), dictionary.getData())) {
+            throw new IllegalArgumentException("Dictionary " + dictionary.getName() + " has the same id as dictionary "
+                    + oldDictionary.getName() + " (" + dictionary.getId() + ")!");
+        }
+    }
+
+    public static ZstdDictionary getDictionary(int id) {
+        return dictionaries.get(id);
+    }
+
+    public static Collection<ZstdDictionary> getDictionaries() {
+        return Collections.unmodifiableCollection(dictionaries.values());
+    }
+}
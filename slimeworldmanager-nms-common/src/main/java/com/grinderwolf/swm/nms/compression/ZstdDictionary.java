@@ -0,0 +1,55 @@
+package com.grinderwolf.swm.nms.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A trained zstd dictionary. Worlds compressed with a dictionary store
+ * its id, so the exact same dictionary is required to decompress them.
+ */
+public final class ZstdDictionary {
+
+    @Getter
+    private final int id;
+    @Getter
+    private final String name;
+    private final byte[] data;
+
+    private final Map<Integer, ZstdDictCompress> compressDictionaries = new ConcurrentHashMap<>();
+    private volatile ZstdDictDecompress decompressDictionary;
+
+    public ZstdDictionary(String name, byte[] data) {
+        long id = Zstd.getDictIdFromDict(data);
+
+        if (id == 0) {
+            throw new IllegalArgumentException("Dictionary " + name + " is not a valid zstd dictionary!");
+        }
+
+        this.id = (int) id;
+        this.name = name;
+        this.data = data.clone();
+    }
+
+    public byte[] getData() {
+        return data.clone();
+    }
+
+    public ZstdDictCompress getCompressDictionary(int level) {
+        return compressDictionaries.computeIfAbsent(level, (lvl) -> new ZstdDictCompress(data, lvl));
+    }
+
+    public ZstdDictDecompress getDecompressDictionary() {
+        ZstdDictDecompress dictionary = decompressDictionary;
+
+        if (dictionary == null) {
+            dictionary = decompressDictionary = new ZstdDictDecompress(data);
+        }
+
+        return dictionary;
+    }
+}
@@ -0,0 +1,117 @@
+package com.grinderwolf.swm.nms.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of byte arrays used as scratch space while worlds are compressed,
+ * decompressed and decoded. Arrays are grouped in power of two sizes, so an
+ * acquired array may be bigger than requested: callers have to keep track
+ * of how many bytes they're actually using.
+ */
+public class BufferPool {
+
+    private static final int MIN_BUCKET_SHIFT = 12; // 4 KiB
+    private static final int MAX_BUCKET_SHIFT = 26; // 64 MiB
+    private static final long MAX_RETAINED_BYTES = 128L * 1024 * 1024;
+
+    private static final Queue<byte[]>[] buckets = createBuckets();
+    private static final AtomicLong retainedBytes = new AtomicLong();
+
+    private static final LongAdder allocations = new LongAdder();
+    private static final LongAdder allocatedBytes = new LongAdder();
+    private static final LongAdder reuses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    private static Queue<byte[]>[] createBuckets() {
+        Queue<byte[]>[] buckets = new Queue[MAX_BUCKET_SHIFT - MIN_BUCKET_SHIFT + 1];
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Returns an array that's at least {@code minLength} bytes long.
+     * Its contents are undefined.
+     *
+     * @param minLength The minimum length of the array.
+     * @return A byte array.
+     */
+    public static byte[] acquire(int minLength) {
+        int shift = bucketShift(minLength);
+
+        if (shift > MAX_BUCKET_SHIFT) {
+            return allocate(minLength);
+        }
+
+        byte[] array = buckets[shift - MIN_BUCKET_SHIFT].poll();
+
+        if (array == null) {
+            return allocate(1 << shift);
+        }
+
+        retainedBytes.addAndGet(-array.length);
+        reuses.increment();
+
+        return array;
+    }
+
+    /**
+     * Gives an array back to the pool. The array must not
+     * be used anymore once this method has been called.
+     *
+     * @param array The array to give back.
+     */
+    public static void release(byte[] array) {
+        int length = array.length;
+
+        // Only keep the arrays handed out by this pool
+        if (length < (1 << MIN_BUCKET_SHIFT) || length > (1 << MAX_BUCKET_SHIFT) || Integer.bitCount(length) != 1) {
+            return;
+        }
+
+        if (retainedBytes.addAndGet(length) > MAX_RETAINED_BYTES) {
+            retainedBytes.addAndGet(-length);
+
+            return;
+        }
+
+        buckets[Integer.numberOfTrailingZeros(length) - MIN_BUCKET_SHIFT].offer(array);
+    }
+
+    private static int bucketShift(int length) {
+        if (length <= (1 << MIN_BUCKET_SHIFT)) {
+            return MIN_BUCKET_SHIFT;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    private static byte[] allocate(int length) {
+        allocations.increment();
+        allocatedBytes.add(length);
+
+        return new byte[length];
+    }
+
+    public static long getAllocations() {
+        return allocations.sum();
+    }
+
+    public static long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public static long getReuses() {
+        return reuses.sum();
+    }
+
+    public static long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+}
@@ -0,0 +1,153 @@
+package com.grinderwolf.swm.nms.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An unsynchronized {@link java.io.ByteArrayOutputStream} that exposes its
+ * backing array, so its contents can be handed over or compressed without
+ * having to copy them first. Instances are meant to be reused by calling
+ * {@link #reset()}.
+ */
+public class FastByteArrayOutputStream extends OutputStream {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private byte[] buffer;
+    private int count;
+
+    public FastByteArrayOutputStream() {
+        this(32);
+    }
+
+    public FastByteArrayOutputStream(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+        }
+
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("Required array size too large");
+        }
+
+        if (minCapacity > buffer.length) {
+            int newCapacity = (int) Math.min(MAX_ARRAY_SIZE, Math.max((long) buffer.length << 1, minCapacity));
+            buffer = Arrays.copyOf(buffer, newCapacity);
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Writes every value as a big-endian int, copying them in bulk. The result
+     * is the same as writing them one by one through a {@link java.io.DataOutputStream}.
+     *
+     * @param values The values to write.
+     */
+    public void writeInts(int[] values) {
+        int length = Math.multiplyExact(values.length, Integer.BYTES);
+
+        ensureCapacity(count + length);
+        ByteBuffer.wrap(buffer, count, length).asIntBuffer().put(values);
+        count += length;
+    }
+
+    /**
+     * Writes every value as a big-endian long, copying them in bulk. The result
+     * is the same as writing them one by one through a {@link java.io.DataOutputStream}.
+     *
+     * @param values The values to write.
+     */
+    public void writeLongs(long[] values) {
+        int length = Math.multiplyExact(values.length, Long.BYTES);
+
+        ensureCapacity(count + length);
+        ByteBuffer.wrap(buffer, count, length).asLongBuffer().put(values);
+        count += length;
+    }
+
+    /**
+     * Overwrites four already written bytes with the given
+     * big-endian int. Used to fill in length prefixes once
+     * the length of the data they precede is known.
+     *
+     * @param index Index of the first byte to overwrite.
+     * @param value The value to write.
+     */
+    public void setInt(int index, int value) {
+        if (index < 0 || index + 4 > count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        buffer[index] = (byte) (value >>> 24);
+        buffer[index + 1] = (byte) (value >>> 16);
+        buffer[index + 2] = (byte) (value >>> 8);
+        buffer[index + 3] = (byte) value;
+    }
+
+    public void writeTo(OutputStream outStream) throws IOException {
+        outStream.write(buffer, 0, count);
+    }
+
+    /**
+     * Returns the backing array of this stream. Only
+     * the first {@link #size()} bytes are meaningful.
+     *
+     * @return The backing array.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Discards the contents of this stream and, if its backing
+     * array has grown past the given capacity, replaces it with
+     * a smaller one, so a reused stream doesn't pin a huge array.
+     *
+     * @param maxCapacity Max capacity the backing array may keep.
+     */
+    public void reset(int maxCapacity) {
+        count = 0;
+
+        if (buffer.length > maxCapacity) {
+            buffer = new byte[maxCapacity];
+        }
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    public ByteArrayInputStream toInputStream() {
+        return new ByteArrayInputStream(buffer, 0, count);
+    }
+}
@@ -0,0 +1,54 @@
+package com.grinderwolf.swm.nms.utils;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding for non-negative ints: 7 bits
+ * per byte, with the highest bit set on every byte but the last one.
+ */
+public class VarInts {
+
+    private static final int MAX_LENGTH = 5;
+
+    public static void write(OutputStream outStream, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            outStream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        outStream.write(value);
+    }
+
+    public static int read(DataInput dataInput) throws IOException {
+        int value = 0;
+
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            byte b = dataInput.readByte();
+            value |= (b & 0x7F) << (i * 7);
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("VarInt is too big");
+    }
+
+    public static int read(ByteBuffer buffer) {
+        int value = 0;
+
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << (i * 7);
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("VarInt is too big");
+    }
+}
@@ -2,12 +2,12 @@ package com.grinderwolf.swm.nms.v1_16_R1;
 
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
-import com.flowpowered.nbt.ListTag;
 import com.flowpowered.nbt.LongArrayTag;
 import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
+import com.grinderwolf.swm.nms.LightTrackingChunk;
 import net.minecraft.server.v1_16_R1.Chunk;
 import net.minecraft.server.v1_16_R1.ChunkSection;
 import net.minecraft.server.v1_16_R1.DataPaletteBlock;
@@ -28,7 +28,7 @@ import net.minecraft.server.v1_16_R1.WorldDataServer;
 
 @Data
 @AllArgsConstructor
-public class NMSSlimeChunk implements SlimeChunk {
+public class NMSSlimeChunk implements SlimeChunk, LightTrackingChunk {
 
     private Chunk chunk;
 
@@ -70,10 +70,10 @@ public class NMSSlimeChunk implements SlimeChunk {
                     NBTTagCompound blocksCompound = new NBTTagCompound();
                     dataPaletteBlock.a(blocksCompound, "Palette", "BlockStates");
                     NBTTagList paletteList = blocksCompound.getList("Palette", 10);
-                    ListTag<CompoundTag> palette = (ListTag<CompoundTag>) Converter.convertTag("", paletteList);
+                    byte[][] palette = NbtCodec.writePalette(paletteList);
                     long[] blockStates = blocksCompound.getLongArray("BlockStates");
 
-                    sections[sectionId] = new CraftSlimeChunkSection(null, null, palette, blockStates, blockLightArray, skyLightArray);
+                    sections[sectionId] = new CraftSlimeChunkSection(palette, blockStates, blockLightArray, skyLightArray);
                 }
             }
         }
@@ -81,6 +81,24 @@ public class NMSSlimeChunk implements SlimeChunk {
         return sections;
     }
 
+    @Override
+    public long hashLight() {
+        LightEngine lightEngine = chunk.world.getChunkProvider().getLightEngine();
+        long hash = 0L;
+
+        for (int sectionId = 0; sectionId < chunk.getSections().length; sectionId++) {
+            SectionPosition position = SectionPosition.a(chunk.getPos(), sectionId);
+            hash = LightTrackingChunk.hashLightArray(getLightBytes(lightEngine.a(EnumSkyBlock.BLOCK).a(position)), hash);
+            hash = LightTrackingChunk.hashLightArray(getLightBytes(lightEngine.a(EnumSkyBlock.SKY).a(position)), hash);
+        }
+
+        return hash;
+    }
+
+    private static byte[] getLightBytes(net.minecraft.server.v1_16_R1.NibbleArray array) {
+        return array == null ? null : array.asBytes();
+    }
+
     @Override
     public CompoundTag getHeightMaps() {
         // HeightMap
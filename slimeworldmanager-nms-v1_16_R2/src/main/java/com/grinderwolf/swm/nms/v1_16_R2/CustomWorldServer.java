@@ -3,14 +3,17 @@ package com.grinderwolf.swm.nms.v1_16_R2;
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.LongArrayTag;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
 import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.AutosaveScheduler;
 import com.grinderwolf.swm.nms.CraftSlimeChunk;
+import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.SaveScheduler;
+import com.grinderwolf.swm.nms.WorldSnapshot;
 import lombok.Getter;
 import lombok.Setter;
 import net.minecraft.server.v1_16_R2.*;
@@ -21,15 +24,11 @@ import org.bukkit.event.world.WorldSaveEvent;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 public class CustomWorldServer extends WorldServer {
 
     private static final Logger LOGGER = LogManager.getLogger("SWM World");
-    private static final ExecutorService WORLD_SAVER_SERVICE = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder()
-            .setNameFormat("SWM Pool Thread #%1$d").build());
     private static final TicketType<Unit> SWM_TICKET = TicketType.a("swm-chunk", (a, b) -> 0);
 
     @Getter
@@ -63,10 +62,28 @@ public class CustomWorldServer extends WorldServer {
         String biomeStr = slimeWorld.getPropertyMap().getValue(SlimeProperties.DEFAULT_BIOME);
         ResourceKey<BiomeBase> biomeKey = ResourceKey.a(IRegistry.ay, new MinecraftKey(biomeStr));
         defaultBiome = MinecraftServer.getServer().getCustomRegistry().b(IRegistry.ay).a(biomeKey);
+
+        // Worlds without a save interval of their own are autosaved as often as the server autosaves its worlds
+        int saveInterval = propertyMap.getValue(SlimeProperties.SAVE_INTERVAL);
+        long saveIntervalTicks = saveInterval > 0 ? (long) saveInterval * AutosaveScheduler.TICKS_PER_SECOND : MinecraftServer.getServer().autosavePeriod;
+
+        if (saveIntervalTicks > 0 && !world.isReadOnly()) {
+            AutosaveScheduler.register(world, saveIntervalTicks, this::autosave);
+        }
     }
 
     @Override
     public void save(IProgressUpdate progressUpdate, boolean forceSave, boolean flag1) {
+        // Autosaves are made by the AutosaveScheduler instead, so they're spread out with the ones of the other worlds
+        if (!forceSave && AutosaveScheduler.isScheduled(slimeWorld)) {
+            return;
+        }
+
+        saveWorld(forceSave, flag1);
+    }
+
+    // Returns whether or not a save of the world has been started
+    private boolean saveWorld(boolean forceSave, boolean flag1) {
         if (!slimeWorld.isReadOnly() && !flag1) {
             Bukkit.getPluginManager().callEvent(new WorldSaveEvent(getWorld()));
 
@@ -81,8 +98,14 @@ public class CustomWorldServer extends WorldServer {
             worldDataServer.a(MinecraftServer.getServer().getCustomRegistry(), compound);
             slimeWorld.getExtraData().getValue().put(Converter.convertTag("LevelData", compound));
 
-            if (MinecraftServer.getServer().isStopped()) { // Make sure the world gets saved before stopping the server by running it from the main thread
-                save();
+            boolean stopping = MinecraftServer.getServer().isStopped();
+
+            // Unchanged worlds are skipped, except when stopping, as the snapshot has to replace any pending save
+            WorldSnapshot snapshot = stopping ? slimeWorld.createSnapshot() : slimeWorld.createSnapshotIfModified();
+
+            if (stopping) { // Make sure the world gets saved before stopping the server by running it from the main thread
+                snapshot.capture(Long.MAX_VALUE);
+                SaveScheduler.saveNow(slimeWorld, () -> save(snapshot));
 
                 // Have to manually unlock the world as well
                 try {
@@ -94,20 +117,37 @@ public class CustomWorldServer extends WorldServer {
                 } catch (UnknownWorldException ignored) {
 
                 }
-            } else {
-                WORLD_SAVER_SERVICE.execute(this::save);
+
+                return true;
+            } else if (snapshot != null) {
+                // Chunks are copied on the main thread, spread across ticks unless the save
+                // is forced, and then encoded without touching the world anymore
+                long tickBudget = forceSave ? Long.MAX_VALUE : WorldSnapshot.DEFAULT_TICK_BUDGET;
+                SaveScheduler.Priority priority = forceSave ? SaveScheduler.Priority.FORCED : SaveScheduler.Priority.AUTOSAVE;
+                snapshot.captureAcrossTicks(tickBudget, () -> SaveScheduler.submit(slimeWorld, priority, () -> save(snapshot)));
+
+                return true;
             }
         }
+
+        return false;
+    }
+
+    private boolean autosave() {
+        return saveWorld(false, !getWorld().isAutoSave());
     }
 
-    private void save() {
+    private void save(WorldSnapshot snapshot) {
         synchronized (saveLock) { // Don't want to save the SlimeWorld from multiple threads simultaneously
             try {
                 LOGGER.info("Saving world " + slimeWorld.getName() + "...");
                 long start = System.currentTimeMillis();
-                byte[] serializedWorld = slimeWorld.serialize();
-                slimeWorld.getLoader().saveWorld(slimeWorld.getName(), serializedWorld, false);
-                LOGGER.info("World " + slimeWorld.getName() + " saved in " + (System.currentTimeMillis() - start) + "ms.");
+
+                if (snapshot.save()) {
+                    LOGGER.info("World " + slimeWorld.getName() + " saved in " + (System.currentTimeMillis() - start) + "ms.");
+                } else {
+                    LOGGER.info("World " + slimeWorld.getName() + " wasn't written, as it hasn't changed since its last save or a newer save has already written it.");
+                }
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
@@ -183,17 +223,27 @@ public class CustomWorldServer extends WorldServer {
             if (slimeSection != null) {
                 ChunkSection section = new ChunkSection(sectionId << 4);
 
-                LOGGER.debug("ChunkSection #" + sectionId + " - Chunk (" + pos.x + ", " + pos.z + ") - World " + slimeWorld.getName() + ":");
-                LOGGER.debug("Block palette:");
-                LOGGER.debug(slimeSection.getPalette().toString());
-                LOGGER.debug("Block states array:");
-                LOGGER.debug(slimeSection.getBlockStates());
-                LOGGER.debug("Block light array:");
-                LOGGER.debug(slimeSection.getBlockLight() != null ? slimeSection.getBlockLight().getBacking() : "Not present");
-                LOGGER.debug("Sky light array:");
-                LOGGER.debug(slimeSection.getSkyLight() != null ? slimeSection.getSkyLight().getBacking() : "Not present");
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("ChunkSection #" + sectionId + " - Chunk (" + pos.x + ", " + pos.z + ") - World " + slimeWorld.getName() + ":");
+                    LOGGER.debug("Block palette:");
+                    LOGGER.debug(slimeSection.getPalette().toString());
+                    LOGGER.debug("Block states array:");
+                    LOGGER.debug(slimeSection.getBlockStates());
+                    LOGGER.debug("Block light array:");
+                    LOGGER.debug(slimeSection.getBlockLight() != null ? slimeSection.getBlockLight().getBacking() : "Not present");
+                    LOGGER.debug("Sky light array:");
+                    LOGGER.debug(slimeSection.getSkyLight() != null ? slimeSection.getSkyLight().getBacking() : "Not present");
+                }
+
+                // Sections read from a loaded chunk or a data file keep their palette serialized, so it doesn't have to go through flowpowered tags
+                byte[][] serializedPalette = slimeSection instanceof CraftSlimeChunkSection ? ((CraftSlimeChunkSection) slimeSection).getSerializedPalette() : null;
+                NBTTagList palette = serializedPalette != null ? NbtCodec.readPalette(serializedPalette) : (NBTTagList) Converter.convertTag(slimeSection.getPalette());
 
-                section.getBlocks().a((NBTTagList) Converter.convertTag(slimeSection.getPalette()), slimeSection.getBlockStates());
+                if (serializedPalette != null) {
+                    BlockStateResolver.install(section.getBlocks(), palette, serializedPalette);
+                }
+
+                section.getBlocks().a(palette, slimeSection.getBlockStates());
 
                 if (slimeSection.getBlockLight() != null) {
                     lightEngine.a(EnumSkyBlock.BLOCK, SectionPosition.a(pos, sectionId), Converter.convertArray(slimeSection.getBlockLight()), true);
@@ -296,5 +346,7 @@ public class CustomWorldServer extends WorldServer {
         } else {
             slimeWorld.updateChunk(new NMSSlimeChunk(chunk));
         }
+
+        slimeWorld.markChunkDirty(chunk.getPos().x, chunk.getPos().z);
     }
 }
\ No newline at end of file
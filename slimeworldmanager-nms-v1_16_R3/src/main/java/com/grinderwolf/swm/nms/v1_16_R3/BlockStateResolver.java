@@ -0,0 +1,132 @@
+package com.grinderwolf.swm.nms.v1_16_R3;
+
+import com.grinderwolf.swm.nms.BlockStateCache;
+import net.minecraft.server.v1_16_R3.ChunkSection;
+import net.minecraft.server.v1_16_R3.DataPaletteBlock;
+import net.minecraft.server.v1_16_R3.IBlockData;
+import net.minecraft.server.v1_16_R3.NBTTagCompound;
+import net.minecraft.server.v1_16_R3.NBTTagList;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+/**
+ * Makes chunk sections resolve their palette entries through the process-wide
+ * {@link BlockStateCache}, instead of parsing every entry again for each section.
+ */
+public class BlockStateResolver {
+
+    private static final BlockStateCache<IBlockData> CACHE = new BlockStateCache<>();
+
+    // Function the block data of every section turns its palette entries into block states with
+    private static final Function<NBTTagCompound, IBlockData> DESERIALIZER;
+    private static final MethodHandle DESERIALIZER_SETTER;
+
+    static {
+        DataPaletteBlock<IBlockData> blocks = new ChunkSection(0).getBlocks();
+        Field field = findDeserializerField(blocks);
+
+        try {
+            DESERIALIZER = getDeserializer(field, blocks);
+            DESERIALIZER_SETTER = MethodHandles.lookup().unreflectSetter(field);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Failed to access the block palette deserializer", ex);
+        }
+    }
+
+    private static Field findDeserializerField(DataPaletteBlock<IBlockData> blocks) {
+        // The field is obfuscated, so it's looked up by what it does: it's the only function turning an empty compound into a block state
+        for (Field field : DataPaletteBlock.class.getDeclaredFields()) {
+            if (field.getType() != Function.class || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            try {
+                field.setAccessible(true);
+
+                if (getDeserializer(field, blocks).apply(new NBTTagCompound()) instanceof IBlockData) {
+                    return field;
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Not the function we're looking for
+            }
+        }
+
+        throw new IllegalStateException("Failed to find the block palette deserializer");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<NBTTagCompound, IBlockData> getDeserializer(Field field, DataPaletteBlock<IBlockData> blocks) throws IllegalAccessException {
+        return (Function<NBTTagCompound, IBlockData>) field.get(blocks);
+    }
+
+    /**
+     * Makes a chunk section resolve the entries of the given palette through the cache.
+     * Has to be called right before the palette is read into the section.
+     *
+     * @param blocks            The block data of the section.
+     * @param palette           The palette that's going to be read.
+     * @param serializedPalette The entries of the palette, serialized as NBT compounds named "".
+     */
+    static void install(DataPaletteBlock<IBlockData> blocks, NBTTagList palette, byte[][] serializedPalette) {
+        if (serializedPalette.length == 0) {
+            return;
+        }
+
+        IBlockData[] states = new IBlockData[serializedPalette.length];
+
+        for (int i = 0; i < states.length; i++) {
+            IBlockData state = CACHE.get(serializedPalette[i]);
+
+            if (state == null) {
+                state = CACHE.put(serializedPalette[i], DESERIALIZER.apply(palette.getCompound(i)));
+            }
+
+            states[i] = state;
+        }
+
+        Function<NBTTagCompound, IBlockData> deserializer = new ResolvedPalette(palette, states);
+
+        try {
+            DESERIALIZER_SETTER.invokeExact(blocks, deserializer);
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("Failed to set the block palette deserializer", throwable);
+        }
+    }
+
+    /**
+     * Hands out the block states of a palette that have already been resolved. Sections read
+     * their palette entries in order, so each entry is checked against the next one. The
+     * function stays in the section, so the palette is let go once it's been read.
+     */
+    private static class ResolvedPalette implements Function<NBTTagCompound, IBlockData> {
+
+        private NBTTagList palette;
+        private IBlockData[] states;
+        private int nextEntry;
+
+        private ResolvedPalette(NBTTagList palette, IBlockData[] states) {
+            this.palette = palette;
+            this.states = states;
+        }
+
+        @Override
+        public IBlockData apply(NBTTagCompound entry) {
+            if (states == null || palette.get(nextEntry) != entry) {
+                return DESERIALIZER.apply(entry);
+            }
+
+            IBlockData state = states[nextEntry++];
+
+            if (nextEntry == states.length) {
+                palette = null;
+                states = null;
+            }
+
+            return state;
+        }
+    }
+}
@@ -26,7 +26,9 @@ public class Converter {
     private static final Logger LOGGER = LogManager.getLogger("SWM Converter");
 
     static net.minecraft.server.v1_16_R3.NibbleArray convertArray(NibbleArray array) {
-        return new net.minecraft.server.v1_16_R3.NibbleArray(array.getBacking());
+        // The light engine copies light arrays before modifying them, so the shared
+        // backing arrays of uniform arrays don't have to be copied here
+        return new net.minecraft.server.v1_16_R3.NibbleArray(array.getSharedBacking());
     }
 
     static NibbleArray convertArray(net.minecraft.server.v1_16_R3.NibbleArray array) {
@@ -14,7 +14,9 @@ public class Converter {
     private static final Logger LOGGER = LogManager.getLogger("SWM Converter");
 
     static net.minecraft.world.level.chunk.NibbleArray convertArray(NibbleArray array) {
-        return new net.minecraft.world.level.chunk.NibbleArray(array.getBacking());
+        // The light engine copies light arrays before modifying them, so the shared
+        // backing arrays of uniform arrays don't have to be copied here
+        return new net.minecraft.world.level.chunk.NibbleArray(array.getSharedBacking());
     }
 
     static NibbleArray convertArray(net.minecraft.world.level.chunk.NibbleArray array) {
@@ -0,0 +1,233 @@
+package com.grinderwolf.swm.nms.v1_17_R2;
+
+import com.grinderwolf.swm.nms.utils.FastByteArrayOutputStream;
+import net.minecraft.nbt.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads NMS tags straight to and from binary NBT, without
+ * going through flowpowered tags. The output is byte for byte the same
+ * the flowpowered {@code NBTOutputStream} writes for the converted tags.
+ */
+public class NbtCodec {
+
+    private static final ThreadLocal<FastByteArrayOutputStream> BUFFER = ThreadLocal.withInitial(() -> new FastByteArrayOutputStream(256));
+
+    /**
+     * Serializes every entry of a block palette as an NBT compound named "".
+     *
+     * @param palette The block palette.
+     * @return The serialized palette entries.
+     */
+    static byte[][] writePalette(NBTTagList palette) {
+        byte[][] entries = new byte[palette.size()][];
+        int index = 0;
+
+        for (NBTBase entry : palette) {
+            entries[index++] = writeCompound((NBTTagCompound) entry);
+        }
+
+        return entries;
+    }
+
+    static NBTTagList readPalette(byte[][] entries) {
+        NBTTagList palette = new NBTTagList();
+
+        for (byte[] entry : entries) {
+            palette.add(readCompound(entry));
+        }
+
+        return palette;
+    }
+
+    static byte[] writeCompound(NBTTagCompound compound) {
+        FastByteArrayOutputStream byteStream = BUFFER.get();
+        byteStream.reset();
+
+        DataOutputStream outStream = new DataOutputStream(byteStream);
+
+        try {
+            outStream.writeByte(compound.getTypeId());
+            writeString(outStream, "");
+            writePayload(outStream, compound);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return byteStream.toByteArray();
+    }
+
+    static NBTTagCompound readCompound(byte[] serializedCompound) {
+        DataInputStream inStream = new DataInputStream(new ByteArrayInputStream(serializedCompound));
+
+        try {
+            byte type = inStream.readByte();
+
+            if (type != 10) {
+                throw new IOException("Expected a compound, got tag type " + type);
+            }
+
+            readString(inStream);
+
+            return (NBTTagCompound) readPayload(inStream, type);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writePayload(DataOutput out, NBTBase base) throws IOException {
+        switch (base.getTypeId()) {
+            case 1:
+                out.writeByte(((NBTTagByte) base).asByte());
+                break;
+            case 2:
+                out.writeShort(((NBTTagShort) base).asShort());
+                break;
+            case 3:
+                out.writeInt(((NBTTagInt) base).asInt());
+                break;
+            case 4:
+                out.writeLong(((NBTTagLong) base).asLong());
+                break;
+            case 5:
+                out.writeFloat(((NBTTagFloat) base).asFloat());
+                break;
+            case 6:
+                out.writeDouble(((NBTTagDouble) base).asDouble());
+                break;
+            case 7:
+                byte[] bytes = ((NBTTagByteArray) base).getBytes();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                break;
+            case 8:
+                writeString(out, ((NBTTagString) base).asString());
+                break;
+            case 9:
+                NBTTagList list = (NBTTagList) base;
+                out.writeByte(list.e());
+                out.writeInt(list.size());
+
+                for (NBTBase entry : list) {
+                    writePayload(out, entry);
+                }
+
+                break;
+            case 10:
+                NBTTagCompound compound = (NBTTagCompound) base;
+
+                for (String key : compound.getKeys()) {
+                    NBTBase value = compound.get(key);
+                    out.writeByte(value.getTypeId());
+                    writeString(out, key);
+                    writePayload(out, value);
+                }
+
+                out.writeByte(0);
+                break;
+            case 11:
+                int[] ints = ((NBTTagIntArray) base).getInts();
+                out.writeInt(ints.length);
+
+                for (int value : ints) {
+                    out.writeInt(value);
+                }
+
+                break;
+            case 12:
+                long[] longs = ((NBTTagLongArray) base).getLongs();
+                out.writeInt(longs.length);
+
+                for (long value : longs) {
+                    out.writeLong(value);
+                }
+
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid tag type " + base.getTypeId());
+        }
+    }
+
+    private static NBTBase readPayload(DataInput in, byte type) throws IOException {
+        switch (type) {
+            case 1:
+                return NBTTagByte.a(in.readByte());
+            case 2:
+                return NBTTagShort.a(in.readShort());
+            case 3:
+                return NBTTagInt.a(in.readInt());
+            case 4:
+                return NBTTagLong.a(in.readLong());
+            case 5:
+                return NBTTagFloat.a(in.readFloat());
+            case 6:
+                return NBTTagDouble.a(in.readDouble());
+            case 7:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+
+                return new NBTTagByteArray(bytes);
+            case 8:
+                return NBTTagString.a(readString(in));
+            case 9:
+                byte entryType = in.readByte();
+                int size = in.readInt();
+                NBTTagList list = new NBTTagList();
+
+                for (int i = 0; i < size; i++) {
+                    list.add(readPayload(in, entryType));
+                }
+
+                return list;
+            case 10:
+                NBTTagCompound compound = new NBTTagCompound();
+
+                for (byte valueType = in.readByte(); valueType != 0; valueType = in.readByte()) {
+                    String key = readString(in);
+                    compound.set(key, readPayload(in, valueType));
+                }
+
+                return compound;
+            case 11:
+                int[] ints = new int[in.readInt()];
+
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = in.readInt();
+                }
+
+                return new NBTTagIntArray(ints);
+            case 12:
+                long[] longs = new long[in.readInt()];
+
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = in.readLong();
+                }
+
+                return new NBTTagLongArray(longs);
+            default:
+                throw new IOException("Invalid tag type " + type);
+        }
+    }
+
+    // Strings are written as plain UTF-8, just like flowpowered does
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -6,9 +6,13 @@ import com.grinderwolf.swm.api.SlimePlugin;
 import com.grinderwolf.swm.api.exceptions.*;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.api.world.SlimeWorldPool;
 import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.AutosaveScheduler;
+import com.grinderwolf.swm.nms.ChunkIndex;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.SaveScheduler;
 import com.grinderwolf.swm.nms.SlimeNMS;
 import com.grinderwolf.swm.nms.v1_16_R1.v1_16_R1SlimeNMS;
 import com.grinderwolf.swm.nms.v1_16_R2.v1_16_R2SlimeNMS;
@@ -17,12 +21,16 @@ import com.grinderwolf.swm.nms.v1_17_R1.v1_17_R1SlimeNMS;
 import com.grinderwolf.swm.nms.v1_17_R2.v1_17_R2SlimeNMS;
 import com.grinderwolf.swm.plugin.commands.CommandManager;
 import com.grinderwolf.swm.plugin.config.ConfigManager;
+import com.grinderwolf.swm.plugin.config.MainConfig;
 import com.grinderwolf.swm.plugin.config.WorldData;
 import com.grinderwolf.swm.plugin.config.WorldsConfig;
+import com.grinderwolf.swm.plugin.executor.AsyncExecutors;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
 import com.grinderwolf.swm.plugin.update.Updater;
 import com.grinderwolf.swm.plugin.upgrade.WorldUpgrader;
+import com.grinderwolf.swm.plugin.world.TemplateCache;
+import com.grinderwolf.swm.plugin.world.WorldPoolManager;
 import com.grinderwolf.swm.plugin.world.WorldUnlocker;
 import com.grinderwolf.swm.plugin.world.importer.WorldImporter;
 import lombok.Getter;
@@ -37,9 +45,16 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.grinderwolf.swm.api.world.properties.SlimeProperties.*;
 
@@ -50,6 +65,15 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
     private final List<SlimeWorld> worlds = new ArrayList<>();
 
+    @Getter
+    private TemplateCache templateCache;
+
+    @Getter
+    private WorldPoolManager worldPoolManager;
+
+    @Getter
+    private AsyncExecutors asyncExecutors;
+
     private static boolean isPaperMC = false;
 
     private static boolean checkIsPaper() {
@@ -73,6 +97,20 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         }
 
         LoaderUtils.registerLoaders();
+        LoaderUtils.loadDictionaries();
+        templateCache = new TemplateCache(ConfigManager.getMainConfig().getTemplateCacheOptions().getMaxMemory() * 1024L * 1024L);
+
+        // Read-only copies of a world loaded from the cache would otherwise keep the data it had before being saved
+        SaveScheduler.setSaveListener(world -> templateCache.invalidate(world.getLoader(), world.getName()));
+
+        MainConfig.SaveOptions saveOptions = ConfigManager.getMainConfig().getSaveOptions();
+        SaveScheduler.setSaverThreads(Math.max(1, saveOptions.getSaverThreads()));
+        SaveScheduler.setMaxSavesPerLoader(Math.max(1, saveOptions.getMaxSavesPerDataSource()));
+
+        asyncExecutors = new AsyncExecutors(this, ConfigManager.getMainConfig().getAsyncOptions());
+
+        MainConfig.WorldPoolOptions poolOptions = ConfigManager.getMainConfig().getWorldPoolOptions();
+        worldPoolManager = new WorldPoolManager(poolOptions.getMaxPoolSize(), poolOptions.getMaxPooledWorlds(), poolOptions.getGenerationsPerTick());
 
         try {
             nms = getNMSBridge();
@@ -133,6 +171,10 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
         getServer().getPluginManager().registerEvents(new WorldUnlocker(), this);
 
+        AutosaveScheduler.setMaxSavesPerSecond(ConfigManager.getMainConfig().getAutosaveOptions().getMaxSavesPerSecond());
+        getServer().getScheduler().runTaskTimer(this, AutosaveScheduler::tick, 1L, 1L);
+        getServer().getScheduler().runTaskTimer(this, worldPoolManager::tick, 1L, 1L);
+
         if (ConfigManager.getMainConfig().getUpdaterOptions().isEnabled()) {
             getServer().getPluginManager().registerEvents(new Updater(), this);
         }
@@ -146,6 +188,13 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         worlds.clear();
     }
 
+    @Override
+    public void onDisable() {
+        if (asyncExecutors != null) {
+            asyncExecutors.shutdown();
+        }
+    }
+
     private SlimeNMS getNMSBridge() throws InvalidVersionException {
         String version = Bukkit.getServer().getClass().getPackage().getName();
         String nmsVersion = version.substring(version.lastIndexOf('.') + 1);
@@ -167,54 +216,120 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
     }
 
     private List<String> loadWorlds() {
-        List<String> erroredWorlds = new ArrayList<>();
+        List<String> erroredWorlds = Collections.synchronizedList(new ArrayList<>());
         WorldsConfig config = ConfigManager.getWorldConfig();
+        int loadsPerDataSource = Math.max(1, ConfigManager.getMainConfig().getAsyncOptions().getStartupLoadsPerDataSource());
+        long start = System.currentTimeMillis();
 
-        for (Map.Entry<String, WorldData> entry : config.getWorlds().entrySet()) {
-            String worldName = entry.getKey();
-            WorldData worldData = entry.getValue();
+        // Worlds are loaded in parallel, but only a few of them at a time from the same data source
+        Map<String, Queue<String>> worldsByDataSource = new LinkedHashMap<>();
 
-            if (worldData.isLoadOnStartup()) {
-                try {
-                    SlimeLoader loader = getLoader(worldData.getDataSource());
+        for (Map.Entry<String, WorldData> entry : config.getWorlds().entrySet()) {
+            if (entry.getValue().isLoadOnStartup()) {
+                worldsByDataSource.computeIfAbsent(entry.getValue().getDataSource(), dataSource -> new ConcurrentLinkedQueue<>()).add(entry.getKey());
+            }
+        }
 
-                    if (loader == null) {
-                        throw new IllegalArgumentException("invalid data source " + worldData.getDataSource() + "");
-                    }
+        Map<String, SlimeWorld> loadedWorlds = new ConcurrentHashMap<>();
+        AtomicLong totalLoadTime = new AtomicLong();
+        List<CompletableFuture<Void>> dataSourceFutures = new ArrayList<>();
 
-                    SlimePropertyMap propertyMap = worldData.toPropertyMap();
-                    SlimeWorld world = loadWorld(loader, worldName, worldData.isReadOnly(), propertyMap);
-
-                    worlds.add(world);
-                } catch (IllegalArgumentException | UnknownWorldException | NewerFormatException | WorldInUseException | CorruptedWorldException | IOException ex) {
-                    String message;
-
-                    if (ex instanceof IllegalArgumentException) {
-                        message = ex.getMessage();
-                    } else if (ex instanceof UnknownWorldException) {
-                        message = "world does not exist, are you sure you've set the correct data source?";
-                    } else if (ex instanceof NewerFormatException) {
-                        message = "world is serialized in a newer Slime Format version (" + ex.getMessage() + ") that SWM does not understand.";
-                    } else if (ex instanceof WorldInUseException) {
-                        message = "world is in use! If you think this is a mistake, please wait some time and try again.";
-                    } else if (ex instanceof CorruptedWorldException) {
-                        message = "world seems to be corrupted.";
-                    } else {
-                        message = "";
+        for (Map.Entry<String, Queue<String>> entry : worldsByDataSource.entrySet()) {
+            String dataSource = entry.getKey();
+            Queue<String> worldNames = entry.getValue();
+            SlimeLoader loader = getLoader(dataSource);
 
-                        ex.printStackTrace();
-                    }
-
-                    Logging.error("Failed to load world " + worldName + (message.isEmpty() ? "." : ": " + message));
+            if (loader == null) {
+                for (String worldName : worldNames) {
+                    logStartupError(worldName, new IllegalArgumentException("invalid data source " + dataSource + ""));
                     erroredWorlds.add(worldName);
                 }
+
+                continue;
+            }
+
+            int worldCount = worldNames.size();
+            List<CompletableFuture<Void>> lanes = new ArrayList<>();
+
+            for (int i = 0; i < Math.min(loadsPerDataSource, worldCount); i++) {
+                lanes.add(loadNextWorld(loader, worldNames, config.getWorlds(), loadedWorlds, erroredWorlds, totalLoadTime));
+            }
+
+            dataSourceFutures.add(CompletableFuture.allOf(lanes.toArray(new CompletableFuture[0])).thenRun(() ->
+                    Logging.info("Loaded " + worldCount + " worlds from data source " + dataSource + " in " + (System.currentTimeMillis() - start) + "ms.")));
+        }
+
+        CompletableFuture.allOf(dataSourceFutures.toArray(new CompletableFuture[0])).join();
+
+        // Keep the order of the config file, so worlds get generated in the same order they used to
+        for (String worldName : config.getWorlds().keySet()) {
+            SlimeWorld world = loadedWorlds.get(worldName);
+
+            if (world != null) {
+                worlds.add(world);
             }
         }
 
+        if (!worldsByDataSource.isEmpty()) {
+            Logging.info("Loaded " + worlds.size() + " worlds in " + (System.currentTimeMillis() - start) + "ms (" + totalLoadTime.get()
+                    + "ms if they had been loaded one at a time), " + erroredWorlds.size() + " failed.");
+        }
+
         config.save();
         return erroredWorlds;
     }
 
+    // Loads the worlds in the queue one after the other, until there are no more left
+    private CompletableFuture<Void> loadNextWorld(SlimeLoader loader, Queue<String> worldNames, Map<String, WorldData> worldDataMap,
+                                                  Map<String, SlimeWorld> loadedWorlds, List<String> erroredWorlds, AtomicLong totalLoadTime) {
+        String worldName = worldNames.poll();
+
+        if (worldName == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        WorldData worldData = worldDataMap.get(worldName);
+        long start = System.currentTimeMillis();
+
+        return AsyncExecutors.supply(Runnable::run, worldData::toPropertyMap)
+                .thenCompose(propertyMap -> loadWorldAsync(loader, worldName, worldData.isReadOnly(), propertyMap))
+                .handle((world, throwable) -> {
+                    totalLoadTime.addAndGet(System.currentTimeMillis() - start);
+
+                    if (throwable != null) {
+                        logStartupError(worldName, throwable instanceof CompletionException ? throwable.getCause() : throwable);
+                        erroredWorlds.add(worldName);
+                    } else {
+                        loadedWorlds.put(worldName, world);
+                    }
+
+                    return null;
+                })
+                .thenCompose(ignored -> loadNextWorld(loader, worldNames, worldDataMap, loadedWorlds, erroredWorlds, totalLoadTime));
+    }
+
+    private static void logStartupError(String worldName, Throwable ex) {
+        String message;
+
+        if (ex instanceof IllegalArgumentException) {
+            message = ex.getMessage();
+        } else if (ex instanceof UnknownWorldException) {
+            message = "world does not exist, are you sure you've set the correct data source?";
+        } else if (ex instanceof NewerFormatException) {
+            message = "world is serialized in a newer Slime Format version (" + ex.getMessage() + ") that SWM does not understand.";
+        } else if (ex instanceof WorldInUseException) {
+            message = "world is in use! If you think this is a mistake, please wait some time and try again.";
+        } else if (ex instanceof CorruptedWorldException) {
+            message = "world seems to be corrupted.";
+        } else {
+            message = "";
+
+            ex.printStackTrace();
+        }
+
+        Logging.error("Failed to load world " + worldName + (message.isEmpty() ? "." : ": " + message));
+    }
+
     @Override
     public SlimeWorld loadWorld(SlimeLoader loader, String worldName, SlimeWorld.SlimeProperties properties) throws UnknownWorldException,
             IOException, CorruptedWorldException, NewerFormatException, WorldInUseException {
@@ -230,20 +345,60 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         Objects.requireNonNull(worldName, "World name cannot be null");
         Objects.requireNonNull(propertyMap, "Properties cannot be null");
 
+        if (readOnly && templateCache.isEnabled()) {
+            // Templates are shared by every caller, so they're decoded with as few properties as possible.
+            // The rest of them are applied to the copy of the template
+            SlimePropertyMap decodeProperties = TemplateCache.getDecodeProperties(propertyMap);
+            CraftSlimeWorld template = templateCache.get(loader, worldName, decodeProperties, () -> readWorld(loader, worldName, true, decodeProperties));
+
+            return copyTemplate(template, propertyMap);
+        }
+
+        if (!readOnly) {
+            // The world is going to be modified, so any cached copy of it will soon be outdated
+            templateCache.invalidate(loader, worldName);
+        }
+
+        return readWorld(loader, worldName, readOnly, propertyMap);
+    }
+
+    @Override
+    public CompletableFuture<SlimeWorld> loadWorldAsync(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) {
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(worldName, "World name cannot be null");
+        Objects.requireNonNull(propertyMap, "Properties cannot be null");
+
+        if (readOnly && templateCache.isEnabled()) {
+            SlimePropertyMap decodeProperties = TemplateCache.getDecodeProperties(propertyMap);
+
+            return templateCache.getAsync(loader, worldName, decodeProperties, () -> readWorldAsync(loader, worldName, true, decodeProperties))
+                    .thenApply(template -> copyTemplate(template, propertyMap));
+        }
+
+        if (!readOnly) {
+            templateCache.invalidate(loader, worldName);
+        }
+
+        return readWorldAsync(loader, worldName, readOnly, propertyMap).thenApply(world -> world);
+    }
+
+    private SlimeWorld copyTemplate(CraftSlimeWorld template, SlimePropertyMap propertyMap) {
+        SlimePropertyMap worldPropertyMap = new SlimePropertyMap(new CompoundMap(template.getPropertyMap().toCompound().getValue()));
+        worldPropertyMap.merge(propertyMap);
+
+        return template.copy(worldPropertyMap);
+    }
+
+    private CraftSlimeWorld readWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) throws UnknownWorldException,
+            IOException, CorruptedWorldException, NewerFormatException, WorldInUseException {
         long start = System.currentTimeMillis();
 
         Logging.info("Loading world " + worldName + ".");
-        byte[] serializedWorld = loader.loadWorld(worldName, readOnly);
+        ByteBuffer serializedWorld = loader.loadWorldBuffer(worldName, readOnly);
         CraftSlimeWorld world;
 
         try {
-            world = LoaderUtils.deserializeWorld(loader, worldName, serializedWorld, propertyMap, readOnly);
-
-            if (world.getVersion() > nms.getWorldVersion()) {
-                WorldUpgrader.downgradeWorld(world);
-            } else if (world.getVersion() < nms.getWorldVersion()) {
-                WorldUpgrader.upgradeWorld(world);
-            }
+            world = decodeWorld(loader, worldName, serializedWorld, propertyMap, readOnly);
         } catch (Exception ex) {
             if (!readOnly) { // Unlock the world as we're not using it
                 loader.unlockWorld(worldName);
@@ -257,6 +412,57 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         return world;
     }
 
+    private CompletableFuture<CraftSlimeWorld> readWorldAsync(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) {
+        long start = System.currentTimeMillis();
+
+        Logging.info("Loading world " + worldName + ".");
+
+        // The data file is fetched on a loader thread, but decoded on a decode thread
+        return loader.loadWorldBufferAsync(worldName, readOnly, asyncExecutors.getLoaderExecutor()).thenCompose(serializedWorld -> {
+            long fetchTime = System.currentTimeMillis() - start;
+
+            return AsyncExecutors.supply(asyncExecutors.getDecodeExecutor(), () -> decodeWorld(loader, worldName, serializedWorld, propertyMap, readOnly))
+                    .whenComplete((world, ex) -> {
+                        if (ex != null && !readOnly) { // Unlock the world as we're not using it
+                            loader.unlockWorldAsync(worldName, asyncExecutors.getLoaderExecutor()).exceptionally(unlockEx -> {
+                                Logging.error("Failed to unlock world " + worldName + ":");
+                                unlockEx.printStackTrace();
+
+                                return null;
+                            });
+                        }
+                    })
+                    .thenApply(world -> {
+                        long loadTime = System.currentTimeMillis() - start;
+                        Logging.info("World " + worldName + " loaded in " + loadTime + "ms (" + fetchTime + "ms fetching it, "
+                                + (loadTime - fetchTime) + "ms decoding it).");
+
+                        return world;
+                    });
+        });
+    }
+
+    private CraftSlimeWorld decodeWorld(SlimeLoader loader, String worldName, ByteBuffer serializedWorld, SlimePropertyMap propertyMap,
+                                        boolean readOnly) throws IOException, CorruptedWorldException, NewerFormatException {
+        CraftSlimeWorld world = LoaderUtils.deserializeWorld(loader, worldName, serializedWorld, propertyMap, readOnly);
+
+        if (world.getVersion() > nms.getWorldVersion()) {
+            WorldUpgrader.downgradeWorld(world);
+        } else if (world.getVersion() < nms.getWorldVersion()) {
+            WorldUpgrader.upgradeWorld(world);
+        }
+
+        return world;
+    }
+
+    @Override
+    public void invalidateTemplate(SlimeLoader loader, String worldName) {
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(worldName, "World name cannot be null");
+
+        templateCache.invalidate(loader, worldName);
+    }
+
     @Override
     public SlimeWorld createEmptyWorld(SlimeLoader loader, String worldName, SlimeWorld.SlimeProperties properties) throws WorldAlreadyExistsException, IOException {
         Objects.requireNonNull(properties, "Properties cannot be null");
@@ -276,15 +482,21 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
         Logging.info("Creating empty world " + worldName + ".");
         long start = System.currentTimeMillis();
-        CraftSlimeWorld world = new CraftSlimeWorld(loader, worldName, new HashMap<>(), new CompoundTag("",
+        CraftSlimeWorld world = new CraftSlimeWorld(loader, worldName, new ChunkIndex(), new CompoundTag("",
                 new CompoundMap()), new ArrayList<>(), nms.getWorldVersion(), propertyMap, readOnly, !readOnly);
-        loader.saveWorld(worldName, world.serialize(), !readOnly);
+        loader.saveWorld(worldName, world::serialize, !readOnly);
+        templateCache.invalidate(loader, worldName);
 
         Logging.info("World " + worldName + " created in " + (System.currentTimeMillis() - start) + "ms.");
 
         return world;
     }
 
+    @Override
+    public CompletableFuture<SlimeWorld> createEmptyWorldAsync(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) {
+        return AsyncExecutors.supply(asyncExecutors.getLoaderExecutor(), () -> createEmptyWorld(loader, worldName, readOnly, propertyMap));
+    }
+
     private SlimePropertyMap propertiesToMap(SlimeWorld.SlimeProperties properties) {
         SlimePropertyMap propertyMap = new SlimePropertyMap();
 
@@ -311,6 +523,15 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         nms.generateWorld(world);
     }
 
+    @Override
+    public SlimeWorldPool createWorldPool(SlimeLoader loader, String templateName, SlimePropertyMap propertyMap, int size, long idleTimeout) {
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(templateName, "Template name cannot be null");
+        Objects.requireNonNull(propertyMap, "Properties cannot be null");
+
+        return worldPoolManager.createPool(loader, templateName, propertyMap, size, idleTimeout);
+    }
+
     @Override
     public void migrateWorld(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader) throws IOException,
             WorldInUseException, WorldAlreadyExistsException, UnknownWorldException {
@@ -344,6 +565,17 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
 
         newLoader.saveWorld(worldName, serializedWorld, leaveLock);
         currentLoader.deleteWorld(worldName);
+        templateCache.invalidate(currentLoader, worldName);
+        templateCache.invalidate(newLoader, worldName);
+    }
+
+    @Override
+    public CompletableFuture<Void> migrateWorldAsync(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader) {
+        return AsyncExecutors.supply(asyncExecutors.getLoaderExecutor(), () -> {
+            migrateWorld(worldName, currentLoader, newLoader);
+
+            return null;
+        });
     }
 
     @Override
@@ -389,6 +621,26 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin {
         }
 
         loader.saveWorld(worldName, serializedWorld, false);
+        templateCache.invalidate(loader, worldName);
+    }
+
+    @Override
+    public CompletableFuture<Void> importWorldAsync(File worldDir, String worldName, SlimeLoader loader) {
+        return AsyncExecutors.supply(asyncExecutors.getLoaderExecutor(), () -> {
+            importWorld(worldDir, worldName, loader);
+
+            return null;
+        });
+    }
+
+    @Override
+    public Executor getLoaderExecutor() {
+        return asyncExecutors.getLoaderExecutor();
+    }
+
+    @Override
+    public Executor getMainThreadExecutor() {
+        return asyncExecutors.getMainThreadExecutor();
     }
 
     public static boolean isPaperMC() {
@@ -36,6 +36,8 @@ public class CommandManager implements TabExecutor {
         commands.put("import", new ImportWorldCmd());
         commands.put("reload", new ReloadConfigCmd());
         commands.put("create", new CreateWorldCmd());
+        commands.put("train-dictionary", new TrainDictionaryCmd());
+        commands.put("stats", new StatsCmd());
     }
 
     @Override
@@ -3,10 +3,10 @@ package com.grinderwolf.swm.plugin.commands.sub;
 
 import com.grinderwolf.swm.api.exceptions.*;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
-import com.grinderwolf.swm.api.world.SlimeWorld;
 import com.grinderwolf.swm.plugin.SWMPlugin;
 import com.grinderwolf.swm.plugin.commands.CommandManager;
 import com.grinderwolf.swm.plugin.config.*;
+import com.grinderwolf.swm.plugin.executor.AsyncExecutors;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
 import lombok.Getter;
@@ -14,10 +14,10 @@ import org.bukkit.*;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 @Getter
 public class CloneWorldCmd implements Subcommand {
@@ -71,20 +71,34 @@ public class CloneWorldCmd implements Subcommand {
                 return true;
             }
 
+            if (initLoader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Unknown data source " + worldData.getDataSource() + "!");
+
+                return true;
+            }
+
             CommandManager.getInstance().getWorldsInUse().add(worldName);
             sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Creating world " + ChatColor.YELLOW + worldName
                     + ChatColor.GRAY + " using " + ChatColor.YELLOW + templateWorldName + ChatColor.GRAY + " as a template...");
 
-            // It's best to load the world async, and then just go back to the server thread and add it to the world list
-            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+            // The template is loaded and cloned async, and the clone is then added to the world list back on the server thread
+            SWMPlugin plugin = SWMPlugin.getInstance();
+            long start = System.currentTimeMillis();
 
-                try {
-                    long start = System.currentTimeMillis();
+            plugin.loadWorldAsync(initLoader, templateWorldName, true, worldData.toPropertyMap())
+                    .thenCompose(templateWorld -> AsyncExecutors.supply(plugin.getLoaderExecutor(), () -> templateWorld.clone(worldName, loader)))
+                    .whenCompleteAsync((slimeWorld, throwable) -> {
+                        CommandManager.getInstance().getWorldsInUse().remove(worldName);
+
+                        if (throwable != null) {
+                            handleCloneError(sender, worldName, templateWorldName, dataSource, worldData,
+                                    throwable instanceof CompletionException ? throwable.getCause() : throwable);
+
+                            return;
+                        }
 
-                    SlimeWorld slimeWorld = SWMPlugin.getInstance().loadWorld(initLoader, templateWorldName, true, worldData.toPropertyMap()).clone(worldName, loader);
-                    Bukkit.getScheduler().runTask(SWMPlugin.getInstance(), () -> {
                         try {
-                            SWMPlugin.getInstance().generateWorld(slimeWorld);
+                            plugin.generateWorld(slimeWorld);
                         } catch (IllegalArgumentException ex) {
                             sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to generate world " + worldName + ": " + ex.getMessage() + ".");
 
@@ -93,38 +107,7 @@ public class CloneWorldCmd implements Subcommand {
 
                         sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "World " + ChatColor.YELLOW + worldName
                                 + ChatColor.GREEN + " loaded and generated in " + (System.currentTimeMillis() - start) + "ms!");
-                    });
-                } catch (WorldAlreadyExistsException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "There is already a world called " + worldName + " stored in " + dataSource + ".");
-                } catch (CorruptedWorldException ex) {
-                    if (!(sender instanceof ConsoleCommandSender)) {
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName +
-                                ": world seems to be corrupted.");
-                    }
-
-                    Logging.error("Failed to load world " + templateWorldName + ": world seems to be corrupted.");
-                    ex.printStackTrace();
-                } catch (NewerFormatException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName + ": this world" +
-                            " was serialized with a newer version of the Slime Format (" + ex.getMessage() + ") that SWM cannot understand.");
-                } catch (UnknownWorldException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName +
-                            ": world could not be found (using data source '" + worldData.getDataSource() + "').");
-                } catch (IllegalArgumentException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName +
-                            ": " + ex.getMessage());
-                } catch (IOException ex) {
-                    if (!(sender instanceof ConsoleCommandSender)) {
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName
-                                + ". Take a look at the server console for more information.");
-                    }
-
-                    Logging.error("Failed to load world " + templateWorldName + ":");
-                    ex.printStackTrace();
-                } catch (WorldInUseException ignored) { } finally {
-                    CommandManager.getInstance().getWorldsInUse().remove(worldName);
-                }
-            });
+                    }, plugin.getMainThreadExecutor());
 
             return true;
         }
@@ -132,6 +115,38 @@ public class CloneWorldCmd implements Subcommand {
         return false;
     }
 
+    private static void handleCloneError(CommandSender sender, String worldName, String templateWorldName, String dataSource,
+                                         WorldData worldData, Throwable throwable) {
+        if (throwable instanceof WorldAlreadyExistsException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "There is already a world called " + worldName + " stored in " + dataSource + ".");
+        } else if (throwable instanceof CorruptedWorldException) {
+            if (!(sender instanceof ConsoleCommandSender)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName +
+                        ": world seems to be corrupted.");
+            }
+
+            Logging.error("Failed to load world " + templateWorldName + ": world seems to be corrupted.");
+            throwable.printStackTrace();
+        } else if (throwable instanceof NewerFormatException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName + ": this world" +
+                    " was serialized with a newer version of the Slime Format (" + throwable.getMessage() + ") that SWM cannot understand.");
+        } else if (throwable instanceof UnknownWorldException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName +
+                    ": world could not be found (using data source '" + worldData.getDataSource() + "').");
+        } else if (throwable instanceof IllegalArgumentException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName +
+                    ": " + throwable.getMessage());
+        } else if (!(throwable instanceof WorldInUseException)) {
+            if (!(sender instanceof ConsoleCommandSender)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + templateWorldName
+                        + ". Take a look at the server console for more information.");
+            }
+
+            Logging.error("Failed to load world " + templateWorldName + ":");
+            throwable.printStackTrace();
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, String[] args) {
         if (args.length == 4) {
@@ -99,6 +99,7 @@ public class DeleteWorldCmd implements Subcommand {
 
                             long start = System.currentTimeMillis();
                             loader.deleteWorld(worldName);
+                            SWMPlugin.getInstance().invalidateTemplate(loader, worldName);
 
                             // Now let's delete it from the config file
                             WorldsConfig config = ConfigManager.getWorldConfig();
@@ -6,7 +6,6 @@ import com.grinderwolf.swm.api.exceptions.NewerFormatException;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
-import com.grinderwolf.swm.api.world.SlimeWorld;
 import com.grinderwolf.swm.plugin.SWMPlugin;
 import com.grinderwolf.swm.plugin.commands.CommandManager;
 import com.grinderwolf.swm.plugin.config.ConfigManager;
@@ -20,10 +19,10 @@ import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 @Getter
 public class LoadWorldCmd implements Subcommand {
@@ -59,66 +58,42 @@ public class LoadWorldCmd implements Subcommand {
                 return true;
             }
 
+            SWMPlugin plugin = SWMPlugin.getInstance();
+            SlimeLoader loader = plugin.getLoader(worldData.getDataSource());
+
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                        ": invalid data source " + worldData.getDataSource());
+
+                return true;
+            }
+
             CommandManager.getInstance().getWorldsInUse().add(worldName);
             sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Loading world " + ChatColor.YELLOW + worldName + ChatColor.GRAY + "...");
 
-            // It's best to load the world async, and then just go back to the server thread and add it to the world list
-            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+            // The world is loaded async, and then added to the world list back on the server thread
+            long start = System.currentTimeMillis();
 
-                try {
-                    // ATTEMPT TO LOAD WORLD
-                    long start = System.currentTimeMillis();
-                    SlimeLoader loader = SWMPlugin.getInstance().getLoader(worldData.getDataSource());
+            plugin.loadWorldAsync(loader, worldName, worldData.isReadOnly(), worldData.toPropertyMap()).whenCompleteAsync((slimeWorld, throwable) -> {
+                CommandManager.getInstance().getWorldsInUse().remove(worldName);
 
-                    if (loader == null) {
-                        throw new IllegalArgumentException("invalid data source " + worldData.getDataSource());
-                    }
+                if (throwable != null) {
+                    handleLoadError(sender, worldName, worldData, throwable instanceof CompletionException ? throwable.getCause() : throwable);
 
-                    SlimeWorld slimeWorld = SWMPlugin.getInstance().loadWorld(loader, worldName, worldData.isReadOnly(), worldData.toPropertyMap());
-                    Bukkit.getScheduler().runTask(SWMPlugin.getInstance(), () -> {
-                        try {
-                            SWMPlugin.getInstance().generateWorld(slimeWorld);
-                        } catch (IllegalArgumentException ex) {
-                            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to generate world " + worldName + ": " + ex.getMessage() + ".");
-
-                            return;
-                        }
-
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "World " + ChatColor.YELLOW + worldName
-                                + ChatColor.GREEN + " loaded and generated in " + (System.currentTimeMillis() - start) + "ms!");
-                    });
-                } catch (CorruptedWorldException ex) {
-                    if (!(sender instanceof ConsoleCommandSender)) {
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                                ": world seems to be corrupted.");
-                    }
+                    return;
+                }
 
-                    Logging.error("Failed to load world " + worldName + ": world seems to be corrupted.");
-                    ex.printStackTrace();
-                } catch (NewerFormatException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName + ": this world" +
-                            " was serialized with a newer version of the Slime Format (" + ex.getMessage() + ") that SWM cannot understand.");
-                } catch (UnknownWorldException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                            ": world could not be found (using data source '" + worldData.getDataSource() + "').");
-                } catch (WorldInUseException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                            ": world is already in use. If you think this is a mistake, please wait some time and try again.");
+                try {
+                    plugin.generateWorld(slimeWorld);
                 } catch (IllegalArgumentException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                            ": " + ex.getMessage());
-                } catch (IOException ex) {
-                    if (!(sender instanceof ConsoleCommandSender)) {
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName
-                                + ". Take a look at the server console for more information.");
-                    }
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to generate world " + worldName + ": " + ex.getMessage() + ".");
 
-                    Logging.error("Failed to load world " + worldName + ":");
-                    ex.printStackTrace();
-                } finally {
-                    CommandManager.getInstance().getWorldsInUse().remove(worldName);
+                    return;
                 }
-            });
+
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "World " + ChatColor.YELLOW + worldName
+                        + ChatColor.GREEN + " loaded and generated in " + (System.currentTimeMillis() - start) + "ms!");
+            }, plugin.getMainThreadExecutor());
 
             return true;
         }
@@ -126,6 +101,38 @@ public class LoadWorldCmd implements Subcommand {
         return false;
     }
 
+    private static void handleLoadError(CommandSender sender, String worldName, WorldData worldData, Throwable throwable) {
+        if (throwable instanceof CorruptedWorldException) {
+            if (!(sender instanceof ConsoleCommandSender)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                        ": world seems to be corrupted.");
+            }
+
+            Logging.error("Failed to load world " + worldName + ": world seems to be corrupted.");
+            throwable.printStackTrace();
+        } else if (throwable instanceof NewerFormatException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName + ": this world" +
+                    " was serialized with a newer version of the Slime Format (" + throwable.getMessage() + ") that SWM cannot understand.");
+        } else if (throwable instanceof UnknownWorldException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                    ": world could not be found (using data source '" + worldData.getDataSource() + "').");
+        } else if (throwable instanceof WorldInUseException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                    ": world is already in use. If you think this is a mistake, please wait some time and try again.");
+        } else if (throwable instanceof IllegalArgumentException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                    ": " + throwable.getMessage());
+        } else {
+            if (!(sender instanceof ConsoleCommandSender)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName
+                        + ". Take a look at the server console for more information.");
+            }
+
+            Logging.error("Failed to load world " + worldName + ":");
+            throwable.printStackTrace();
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, String[] args) {
         List<String> toReturn = null;
@@ -2,6 +2,7 @@ package com.grinderwolf.swm.plugin.commands.sub;
 
 
 import com.grinderwolf.swm.plugin.config.ConfigManager;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
 import lombok.Getter;
 import ninja.leaping.configurate.objectmapping.ObjectMappingException;
@@ -24,6 +25,7 @@ public class ReloadConfigCmd implements Subcommand {
     public boolean onCommand(CommandSender sender, String[] args) {
         try {
             ConfigManager.initialize();
+            LoaderUtils.loadDictionaries();
         } catch (IOException | ObjectMappingException ex) {
             if (!(sender instanceof ConsoleCommandSender)) {
                 sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to reload the config file. Take a look at the server console for more information.");
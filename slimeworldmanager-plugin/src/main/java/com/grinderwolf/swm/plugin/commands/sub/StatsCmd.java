@@ -0,0 +1,74 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.nms.BlockStateCache;
+import com.grinderwolf.swm.nms.SaveScheduler;
+import com.grinderwolf.swm.nms.compression.ZstdCodec;
+import com.grinderwolf.swm.nms.utils.BufferPool;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.log.Logging;
+import com.grinderwolf.swm.plugin.world.TemplateCache;
+import com.grinderwolf.swm.plugin.world.WorldPool;
+import lombok.Getter;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+public class StatsCmd implements Subcommand {
+
+    private final String usage = "stats";
+    private final String description = "Shows world serialization and saving statistics.";
+    private final String permission = "swm.stats";
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Zstd: " + ChatColor.YELLOW + toMegabytes(ZstdCodec.getCompressedBytes())
+                + ChatColor.GRAY + " compressed, " + ChatColor.YELLOW + toMegabytes(ZstdCodec.getDecompressedBytes()) + ChatColor.GRAY
+                + " decompressed, " + ChatColor.YELLOW + ZstdCodec.getCreatedContexts() + ChatColor.GRAY + " contexts created.");
+        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Buffers: " + ChatColor.YELLOW + BufferPool.getReuses() + ChatColor.GRAY
+                + " reused, " + ChatColor.YELLOW + BufferPool.getAllocations() + ChatColor.GRAY + " allocated (" + ChatColor.YELLOW
+                + toMegabytes(BufferPool.getAllocatedBytes()) + ChatColor.GRAY + "), " + ChatColor.YELLOW + toMegabytes(BufferPool.getRetainedBytes())
+                + ChatColor.GRAY + " pooled.");
+        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Saves: " + ChatColor.YELLOW + SaveScheduler.getQueuedSaves() + ChatColor.GRAY
+                + " queued, " + ChatColor.YELLOW + SaveScheduler.getRunningSaves() + ChatColor.GRAY + " running, " + ChatColor.YELLOW
+                + SaveScheduler.getCompletedSaves() + ChatColor.GRAY + " completed, " + ChatColor.YELLOW + SaveScheduler.getCoalescedSaves()
+                + ChatColor.GRAY + " merged. Wait time: " + ChatColor.YELLOW + toMillis(SaveScheduler.getAverageWaitTime()) + ChatColor.GRAY
+                + " average, " + ChatColor.YELLOW + toMillis(SaveScheduler.getMaxWaitTime()) + ChatColor.GRAY + " max.");
+        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Block states: " + ChatColor.YELLOW + BlockStateCache.getCachedStates()
+                + ChatColor.GRAY + " cached, " + ChatColor.YELLOW + BlockStateCache.getHits() + ChatColor.GRAY + " hits, " + ChatColor.YELLOW
+                + BlockStateCache.getMisses() + ChatColor.GRAY + " misses (" + ChatColor.YELLOW + String.format("%.1f%%", BlockStateCache.getHitRate() * 100.0D)
+                + ChatColor.GRAY + " hit rate).");
+        TemplateCache templateCache = SWMPlugin.getInstance().getTemplateCache();
+        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Templates: " + ChatColor.YELLOW + templateCache.getCachedTemplates() + ChatColor.GRAY
+                + " cached (" + ChatColor.YELLOW + toMegabytes(templateCache.getUsedBytes()) + ChatColor.GRAY + " of " + ChatColor.YELLOW
+                + toMegabytes(templateCache.getMaxBytes()) + ChatColor.GRAY + "), " + ChatColor.YELLOW + templateCache.getHits() + ChatColor.GRAY
+                + " hits, " + ChatColor.YELLOW + templateCache.getMisses() + ChatColor.GRAY + " misses, " + ChatColor.YELLOW + templateCache.getSharedLoads()
+                + ChatColor.GRAY + " shared loads, " + ChatColor.YELLOW + templateCache.getEvictions() + ChatColor.GRAY + " evicted.");
+
+        for (WorldPool pool : SWMPlugin.getInstance().getWorldPoolManager().getPools()) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Pool " + ChatColor.YELLOW + pool.getTemplateName() + ChatColor.GRAY + ": "
+                    + ChatColor.YELLOW + pool.getReadyWorlds() + "/" + pool.getSize() + ChatColor.GRAY + " ready, " + ChatColor.YELLOW
+                    + String.format("%.1f%%", pool.getHitRate() * 100.0D) + ChatColor.GRAY + " hit rate. Refill time: " + ChatColor.YELLOW
+                    + pool.getAverageRefillTime() + " ms" + ChatColor.GRAY + " average, " + ChatColor.YELLOW + pool.getMaxRefillTime() + " ms"
+                    + ChatColor.GRAY + " max.");
+        }
+
+        return true;
+    }
+
+    private static String toMegabytes(long bytes) {
+        return String.format("%.2f MB", bytes / (1024.0D * 1024.0D));
+    }
+
+    private static String toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        return Collections.emptyList();
+    }
+}
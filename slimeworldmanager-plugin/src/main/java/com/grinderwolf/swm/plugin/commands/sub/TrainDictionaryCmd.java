@@ -0,0 +1,157 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.exceptions.NewerFormatException;
+import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
+import com.grinderwolf.swm.api.exceptions.WorldInUseException;
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.compression.ZstdDictionaries;
+import com.grinderwolf.swm.nms.compression.ZstdDictionary;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
+import com.grinderwolf.swm.plugin.log.Logging;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+@Getter
+public class TrainDictionaryCmd implements Subcommand {
+
+    private static final int DICTIONARY_SIZE = 112640; // Default zstd dictionary size
+    private static final int SAMPLES_SIZE = DICTIONARY_SIZE * 100; // zstd recommends around 100 times the dictionary size
+    private static final int DEFAULT_MAX_WORLDS = 500;
+
+    private final String usage = "train-dictionary <data-source> <name> [max-worlds]";
+    private final String description = "Train a zstd dictionary from the worlds inside a data source.";
+    private final String permission = "swm.traindictionary";
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        if (args.length > 1) {
+            String source = args[0];
+            SlimeLoader loader = LoaderUtils.getLoader(source);
+
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Unknown data source " + source + ".");
+
+                return true;
+            }
+
+            String name = args[1];
+
+            if (!name.matches("[a-zA-Z0-9_-]+")) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "'" + name + "' is not a valid dictionary name.");
+
+                return true;
+            }
+
+            File dictionaryFile = new File(LoaderUtils.getDictionariesDirectory(), name + ".dict");
+
+            if (dictionaryFile.exists()) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Dictionary " + name + " already exists!");
+
+                return true;
+            }
+
+            int maxWorlds = DEFAULT_MAX_WORLDS;
+
+            if (args.length > 2) {
+                try {
+                    maxWorlds = Integer.parseInt(args[2]);
+
+                    if (maxWorlds < 1) {
+                        throw new NumberFormatException();
+                    }
+                } catch (NumberFormatException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "'" + args[2] + "' is not a valid number.");
+
+                    return true;
+                }
+            }
+
+            int worldLimit = maxWorlds;
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Training dictionary " + name + " from data source " + source + "...");
+
+            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+                try {
+                    long start = System.currentTimeMillis();
+                    ZstdDictTrainer trainer = new ZstdDictTrainer(SAMPLES_SIZE, DICTIONARY_SIZE);
+                    List<String> worlds = loader.listWorlds();
+                    int sampledWorlds = 0;
+
+                    for (String worldName : worlds) {
+                        if (sampledWorlds >= worldLimit) {
+                            break;
+                        }
+
+                        try {
+                            // Read-only, so the world doesn't get locked
+                            byte[] serializedWorld = loader.loadWorld(worldName, true);
+                            CraftSlimeWorld world = LoaderUtils.deserializeWorld(loader, worldName, serializedWorld, new SlimePropertyMap(), true);
+
+                            world.collectDictionarySamples(trainer::addSample);
+                            sampledWorlds++;
+                        } catch (UnknownWorldException | WorldInUseException | CorruptedWorldException | NewerFormatException | IOException ex) {
+                            Logging.warning("Skipping world " + worldName + " while training dictionary " + name + ": " + ex.getMessage());
+                        }
+                    }
+
+                    if (sampledWorlds == 0) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Data source " + source + " doesn't contain any world that can be used to train a dictionary.");
+
+                        return;
+                    }
+
+                    byte[] dictionaryData = trainer.trainSamples();
+                    ZstdDictionary dictionary = new ZstdDictionary(name, dictionaryData);
+
+                    dictionaryFile.getParentFile().mkdirs();
+                    Files.write(dictionaryFile.toPath(), dictionaryData);
+                    ZstdDictionaries.register(dictionary);
+
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "Dictionary " + ChatColor.YELLOW + name + ChatColor.GREEN + " trained from "
+                            + sampledWorlds + " worlds in " + (System.currentTimeMillis() - start) + "ms! Set it as the compression dictionary in main.yml to use it.");
+                } catch (ZstdException | IllegalArgumentException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to train dictionary " + name + ": " + ex.getMessage()
+                            + ". Try using more worlds.");
+                } catch (IOException ex) {
+                    if (!(sender instanceof ConsoleCommandSender)) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to train dictionary " + name
+                                + ". Take a look at the server console for more information.");
+                    }
+
+                    Logging.error("Failed to train dictionary " + name + " (using data source " + source + "):");
+                    ex.printStackTrace();
+                }
+            });
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        List<String> toReturn = null;
+
+        if (args.length == 2) {
+            toReturn = new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+        }
+
+        return toReturn == null ? Collections.emptyList() : toReturn;
+    }
+}
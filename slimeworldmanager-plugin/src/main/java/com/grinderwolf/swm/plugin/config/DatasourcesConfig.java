@@ -57,6 +57,7 @@ public class DatasourcesConfig {
     public static class FileConfig {
 
         @Setting("path") private String path = "slime_worlds";
+        @Setting("maxOpenFiles") private int maxOpenFiles = 64;
 
     }
 
@@ -27,6 +27,107 @@ public class MainConfig {
         private final boolean messageEnabled = true;
     }
 
+    @Setting("compression")
+    private CompressionOptions compressionOptions = new CompressionOptions();
+
+    @Getter
+    @ConfigSerializable
+    public static class CompressionOptions {
+
+        // Name of the zstd dictionary, inside the dictionaries directory, used to compress worlds
+        @Setting(value = "dictionary")
+        private String dictionary = "";
+    }
+
+    @Setting("autosave")
+    private AutosaveOptions autosaveOptions = new AutosaveOptions();
+
+    @Getter
+    @ConfigSerializable
+    public static class AutosaveOptions {
+
+        // Max amount of modified SWM worlds that get autosaved every second, or 0 to not limit it. Unmodified worlds are skipped without counting
+        @Setting(value = "maxSavesPerSecond")
+        private int maxSavesPerSecond = 5;
+    }
+
+    @Setting("saves")
+    private SaveOptions saveOptions = new SaveOptions();
+
+    @Getter
+    @ConfigSerializable
+    public static class SaveOptions {
+
+        // Max amount of SWM worlds being encoded and written at the same time
+        @Setting(value = "saverThreads")
+        private int saverThreads = 4;
+
+        // Max amount of SWM worlds being saved at the same time to the same data source
+        @Setting(value = "maxSavesPerDataSource")
+        private int maxSavesPerDataSource = 2;
+    }
+
+    @Setting("templateCache")
+    private TemplateCacheOptions templateCacheOptions = new TemplateCacheOptions();
+
+    @Getter
+    @ConfigSerializable
+    public static class TemplateCacheOptions {
+
+        // Max estimated memory, in megabytes, taken up by the read-only worlds kept in memory, or 0 to not keep any.
+        // Cached worlds aren't checked against their data source, so only enable this if worlds are never modified outside of SWM
+        @Setting(value = "maxMemory")
+        private int maxMemory = 0;
+    }
+
+    @Setting("worldPools")
+    private WorldPoolOptions worldPoolOptions = new WorldPoolOptions();
+
+    @Getter
+    @ConfigSerializable
+    public static class WorldPoolOptions {
+
+        // Max amount of worlds a single pool can keep ready
+        @Setting(value = "maxPoolSize")
+        private int maxPoolSize = 16;
+
+        // Max amount of worlds all pools together can keep ready
+        @Setting(value = "maxPooledWorlds")
+        private int maxPooledWorlds = 64;
+
+        // Max amount of pooled worlds generated every tick
+        @Setting(value = "generationsPerTick")
+        private int generationsPerTick = 1;
+    }
+
+    @Setting("async")
+    private AsyncOptions asyncOptions = new AsyncOptions();
+
+    @Getter
+    @ConfigSerializable
+    public static class AsyncOptions {
+
+        // Max amount of data source operations running at the same time
+        @Setting(value = "loaderThreads")
+        private int loaderThreads = 8;
+
+        // Max amount of worlds being decoded at the same time, or 0 to use one thread per processor
+        @Setting(value = "decodeThreads")
+        private int decodeThreads = 0;
+
+        // Max amount of operations waiting for a thread. Operations over this limit fail right away
+        @Setting(value = "queueSize")
+        private int queueSize = 1024;
+
+        // Max amount of worlds loaded at the same time from the same data source on startup
+        @Setting(value = "startupLoadsPerDataSource")
+        private int startupLoadsPerDataSource = 4;
+
+        // Whether or not to run data source operations on virtual threads, if the Java version supports them
+        @Setting(value = "virtualThreads")
+        private boolean virtualThreads = false;
+    }
+
     public void save() {
         try {
             ConfigManager.getMainConfigLoader().save(ConfigManager.getMainConfigLoader().createEmptyNode().setValue(TypeToken.of(MainConfig.class), this));
@@ -40,6 +40,12 @@ public class WorldData {
     private String worldType = "DEFAULT";
     @Setting("defaultBiome")
     private String defaultBiome = "minecraft:plains";
+    @Setting("compressionLevel")
+    private int compressionLevel = 3;
+    @Setting("saveInterval")
+    private int saveInterval = 0;
+    @Setting("lazyChunks")
+    private boolean lazyChunks = false;
 
     @Setting("loadOnStartup")
     private boolean loadOnStartup = true;
@@ -97,6 +103,19 @@ public class WorldData {
         propertyMap.setValue(ENVIRONMENT, environment);
         propertyMap.setValue(WORLD_TYPE, worldType);
         propertyMap.setValue(DEFAULT_BIOME, defaultBiome);
+        propertyMap.setValue(LAZY_CHUNKS, lazyChunks);
+
+        try {
+            propertyMap.setValue(COMPRESSION_LEVEL, compressionLevel);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("invalid compression level '" + this.compressionLevel + "'");
+        }
+
+        try {
+            propertyMap.setValue(SAVE_INTERVAL, saveInterval);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("invalid save interval '" + this.saveInterval + "'");
+        }
 
         return propertyMap;
     }
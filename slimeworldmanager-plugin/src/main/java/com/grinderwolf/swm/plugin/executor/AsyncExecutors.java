@@ -0,0 +1,143 @@
+package com.grinderwolf.swm.plugin.executor;
+
+import com.grinderwolf.swm.plugin.config.MainConfig;
+import com.grinderwolf.swm.plugin.log.Logging;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors the asynchronous operations of SWM run on. Loader I/O and world decoding
+ * get their own executors, each with its own thread limit, so slow data sources can't
+ * take up the threads decoding needs and the other way around. Executors backed by platform
+ * threads have a bounded queue: once it's full, new tasks are rejected instead of piling up,
+ * and the futures of the operations fail with a {@link RejectedExecutionException}.
+ */
+public class AsyncExecutors {
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final ExecutorService loaderService;
+    @Getter
+    private final Executor loaderExecutor;
+    @Getter
+    private final ExecutorService decodeExecutor;
+    @Getter
+    private final Executor mainThreadExecutor;
+
+    public AsyncExecutors(Plugin plugin, MainConfig.AsyncOptions options) {
+        int loaderThreads = Math.max(1, options.getLoaderThreads());
+        int decodeThreads = options.getDecodeThreads() > 0 ? options.getDecodeThreads() : Runtime.getRuntime().availableProcessors();
+        ExecutorService virtualThreadService = options.isVirtualThreads() ? createVirtualThreadService() : null;
+
+        if (virtualThreadService != null) {
+            loaderService = virtualThreadService;
+            loaderExecutor = new BoundedExecutor(virtualThreadService, loaderThreads);
+        } else {
+            loaderService = createService("SWM Loader Thread #", loaderThreads, options.getQueueSize());
+            loaderExecutor = loaderService;
+        }
+
+        decodeExecutor = createService("SWM Decode Thread #", decodeThreads, options.getQueueSize());
+        mainThreadExecutor = command -> Bukkit.getScheduler().runTask(plugin, command);
+    }
+
+    private static ExecutorService createService(String threadName, int threads, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, threadName + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueSize)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    // Virtual threads are only available on Java 21 and newer, so they're looked up reflectively
+    private static ExecutorService createVirtualThreadService() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            Logging.warning("Virtual threads are not supported by this Java version. Using platform threads instead.");
+
+            return null;
+        }
+    }
+
+    /**
+     * Runs a task on the given executor.
+     *
+     * @param executor The executor.
+     * @param task     The task.
+     * @param <T>      The type of the result of the task.
+     * @return A future completed with the result of the task, or with the exception it throws.
+     */
+    public static <T> CompletableFuture<T> supply(Executor executor, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
+
+    public void shutdown() {
+        loaderService.shutdown();
+        decodeExecutor.shutdown();
+    }
+
+    /**
+     * Limits how many tasks run at the same time on an executor that doesn't limit it on its own.
+     * Tasks wait for their turn on the thread they've been given, which is cheap on virtual threads.
+     */
+    private static class BoundedExecutor implements Executor {
+
+        private final Executor executor;
+        private final Semaphore permits;
+
+        private BoundedExecutor(Executor executor, int maxTasks) {
+            this.executor = executor;
+            this.permits = new Semaphore(maxTasks);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(() -> {
+                permits.acquireUninterruptibly();
+
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+}
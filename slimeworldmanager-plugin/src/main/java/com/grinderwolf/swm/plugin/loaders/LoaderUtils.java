@@ -8,7 +8,6 @@ import com.flowpowered.nbt.IntTag;
 import com.flowpowered.nbt.ListTag;
 import com.flowpowered.nbt.TagType;
 import com.flowpowered.nbt.stream.NBTInputStream;
-import com.github.luben.zstd.Zstd;
 import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
 import com.grinderwolf.swm.api.exceptions.NewerFormatException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
@@ -16,10 +15,20 @@ import com.grinderwolf.swm.api.utils.NibbleArray;
 import com.grinderwolf.swm.api.utils.SlimeFormat;
 import com.grinderwolf.swm.api.world.SlimeChunk;
 import com.grinderwolf.swm.api.world.SlimeChunkSection;
+import com.grinderwolf.swm.api.world.properties.SlimeProperties;
 import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.ChunkIndex;
 import com.grinderwolf.swm.nms.CraftSlimeChunk;
 import com.grinderwolf.swm.nms.CraftSlimeChunkSection;
 import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import com.grinderwolf.swm.nms.LazySlimeChunk;
+import com.grinderwolf.swm.nms.WorldPalette;
+import com.grinderwolf.swm.nms.compression.ZstdDictionaries;
+import com.grinderwolf.swm.nms.compression.ZstdCodec;
+import com.grinderwolf.swm.nms.compression.ZstdDictionary;
+import com.grinderwolf.swm.nms.utils.BufferPool;
+import com.grinderwolf.swm.nms.utils.VarInts;
+import com.grinderwolf.swm.plugin.SWMPlugin;
 import com.grinderwolf.swm.plugin.config.ConfigManager;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
 import com.grinderwolf.swm.plugin.loaders.file.FileLoader;
@@ -31,20 +40,38 @@ import com.mongodb.MongoException;
 
 import io.lettuce.core.RedisException;
 import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 public class LoaderUtils {
 
     public static final long MAX_LOCK_TIME = 300000L; // Max time difference between current time millis and world lock
     public static final long LOCK_INTERVAL = 60000L;
 
+    // Worlds with fewer chunks than this are decoded on the calling thread
+    private static final int PARALLEL_DECODE_THRESHOLD = 64;
+    private static final ForkJoinPool DESERIALIZATION_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("SWM Deserialization Thread #" + thread.getPoolIndex());
+
+        return thread;
+    }, null, false);
+
+    private static final FilenameFilter DICTIONARY_FILE_FILTER = (dir, name) -> name.endsWith(".dict");
+
     private static final Map<String, SlimeLoader> loaderMap = new HashMap<>();
 
     public static void registerLoaders() {
@@ -52,7 +79,7 @@ public class LoaderUtils {
 
         // File loader
         DatasourcesConfig.FileConfig fileConfig = config.getFileConfig();
-        registerLoader("file", new FileLoader(new File(fileConfig.getPath())));
+        registerLoader("file", new FileLoader(new File(fileConfig.getPath()), fileConfig.getMaxOpenFiles()));
 
         // Mysql loader
         DatasourcesConfig.MysqlConfig mysqlConfig = config.getMysqlConfig();
@@ -88,6 +115,40 @@ public class LoaderUtils {
         }
     }
 
+    public static File getDictionariesDirectory() {
+        return new File(SWMPlugin.getInstance().getDataFolder(), "dictionaries");
+    }
+
+    public static void loadDictionaries() {
+        File[] dictionaryFiles = getDictionariesDirectory().listFiles(DICTIONARY_FILE_FILTER);
+
+        if (dictionaryFiles != null) {
+            for (File dictionaryFile : dictionaryFiles) {
+                String name = dictionaryFile.getName().substring(0, dictionaryFile.getName().length() - 5);
+
+                try {
+                    ZstdDictionaries.register(new ZstdDictionary(name, Files.readAllBytes(dictionaryFile.toPath())));
+                } catch (IOException | IllegalArgumentException ex) {
+                    Logging.error("Failed to load zstd dictionary " + name + ":");
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+        String defaultDictionary = ConfigManager.getMainConfig().getCompressionOptions().getDictionary();
+        ZstdDictionary dictionary = null;
+
+        if (defaultDictionary != null && !defaultDictionary.isEmpty()) {
+            dictionary = ZstdDictionaries.getDictionaries().stream().filter((dict) -> dict.getName().equals(defaultDictionary)).findFirst().orElse(null);
+
+            if (dictionary == null) {
+                Logging.warning("Unknown zstd dictionary " + defaultDictionary + ". Worlds will be compressed without a dictionary.");
+            }
+        }
+
+        ZstdDictionaries.setDefaultDictionary(dictionary);
+    }
+
     public static List<String> getAvailableLoadersNames() {
         return new LinkedList<>(loaderMap.keySet());
     }
@@ -121,18 +182,33 @@ public class LoaderUtils {
 
     public static CraftSlimeWorld deserializeWorld(SlimeLoader loader, String worldName, byte[] serializedWorld, SlimePropertyMap propertyMap, boolean readOnly)
             throws IOException, CorruptedWorldException, NewerFormatException {
-        DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(serializedWorld));
+        return deserializeWorld(loader, worldName, ByteBuffer.wrap(serializedWorld), propertyMap, readOnly);
+    }
+
+    /**
+     * Deserializes a world from the data file between the buffer's position and limit. The buffer
+     * is only read until this method returns, so it can be a mapping of the data file that gets
+     * unmapped afterwards. Compressed sections are copied out of it as they're read.
+     */
+    public static CraftSlimeWorld deserializeWorld(SlimeLoader loader, String worldName, ByteBuffer serializedWorld, SlimePropertyMap propertyMap, boolean readOnly)
+            throws IOException, CorruptedWorldException, NewerFormatException {
+        ByteBuffer dataBuffer = serializedWorld.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+        // Pooled buffers that have to be given back if the world fails to load: compressed sections that
+        // haven't been handed over to their decompression task yet, and chunk data nothing has taken yet
+        List<CompressedSection> compressedSections = new ArrayList<>();
+        List<CompletableFuture<byte[]>> chunkDataFutures = new ArrayList<>();
 
         try {
             byte[] fileHeader = new byte[SlimeFormat.SLIME_HEADER.length];
-            dataStream.read(fileHeader);
+            dataBuffer.get(fileHeader);
 
             if (!Arrays.equals(SlimeFormat.SLIME_HEADER, fileHeader)) {
                 throw new CorruptedWorldException(worldName);
             }
 
             // File version
-            byte version = dataStream.readByte();
+            byte version = dataBuffer.get();
 
             if (version > SlimeFormat.SLIME_VERSION) {
                 throw new NewerFormatException(version);
@@ -142,18 +218,34 @@ public class LoaderUtils {
             byte worldVersion;
 
             if (version >= 6) {
-                worldVersion = dataStream.readByte();
+                worldVersion = dataBuffer.get();
             } else if (version >= 4) { // In v4 there's just a boolean indicating whether the world is pre-1.13 or post-1.13
-                worldVersion = (byte) (dataStream.readBoolean() ? 0x04 : 0x01);
+                worldVersion = (byte) (dataBuffer.get() != 0 ? 0x04 : 0x01);
             } else {
                 worldVersion = 0; // We'll try to automatically detect it later
             }
 
+            // Zstd dictionary
+            ZstdDictionary dictionary = null;
+
+            if (version >= 10) {
+                int dictionaryId = dataBuffer.getInt();
+
+                if (dictionaryId != 0) {
+                    dictionary = ZstdDictionaries.getDictionary(dictionaryId);
+
+                    if (dictionary == null) {
+                        throw new IOException("World " + worldName + " has been compressed using zstd dictionary " + dictionaryId
+                                + ", which is not loaded. Make sure it's inside the dictionaries directory.");
+                    }
+                }
+            }
+
             // Chunk
-            short minX = dataStream.readShort();
-            short minZ = dataStream.readShort();
-            int width = dataStream.readShort();
-            int depth = dataStream.readShort();
+            short minX = dataBuffer.getShort();
+            short minZ = dataBuffer.getShort();
+            int width = dataBuffer.getShort();
+            int depth = dataBuffer.getShort();
 
             if (width <= 0 || depth <= 0) {
                 throw new CorruptedWorldException(worldName);
@@ -161,83 +253,165 @@ public class LoaderUtils {
 
             int bitmaskSize = (int) Math.ceil((width * depth) / 8.0D);
             byte[] chunkBitmask = new byte[bitmaskSize];
-            dataStream.read(chunkBitmask);
+            dataBuffer.get(chunkBitmask);
             BitSet chunkBitset = BitSet.valueOf(chunkBitmask);
 
-            int compressedChunkDataLength = dataStream.readInt();
-            int chunkDataLength = dataStream.readInt();
-            byte[] compressedChunkData = new byte[compressedChunkDataLength];
-            byte[] chunkData = new byte[chunkDataLength];
+            // Coordinates of every stored chunk, in the same order they were written
+            int chunkCount = chunkBitset.cardinality();
+            int[] chunkXs = new int[chunkCount];
+            int[] chunkZs = new int[chunkCount];
+            int chunkIndex = 0;
 
-            dataStream.read(compressedChunkData);
+            for (int z = 0; z < depth; z++) {
+                for (int x = 0; x < width; x++) {
+                    int bitsetIndex = z * width + x;
 
-            // Tile Entities
-            int compressedTileEntitiesLength = dataStream.readInt();
-            int tileEntitiesLength = dataStream.readInt();
-            byte[] compressedTileEntities = new byte[compressedTileEntitiesLength];
-            byte[] tileEntities = new byte[tileEntitiesLength];
+                    if (chunkBitset.get(bitsetIndex)) {
+                        chunkXs[chunkIndex] = minX + x;
+                        chunkZs[chunkIndex] = minZ + z;
+                        chunkIndex++;
+                    }
+                }
+            }
 
-            dataStream.read(compressedTileEntities);
+            // Chunk index
+            List<ChunkFrame> chunkFrames = null;
+
+            if (version >= 12) {
+                chunkFrames = readChunkIndex(dataBuffer, worldName, chunkCount);
+            }
+
+            // Block states table
+            CompressedSection blockStatesSection = CompressedSection.EMPTY;
+
+            if (version >= 11) {
+                blockStatesSection = readSection(dataBuffer, worldName, compressedSections);
+            }
+
+            // Chunks, either as a single section or as independently compressed frames
+            CompressedSection chunkSection = CompressedSection.EMPTY;
+            List<CompressedSection> chunkFrameSections = new ArrayList<>();
+
+            if (chunkFrames != null) {
+                for (ChunkFrame frame : chunkFrames) {
+                    chunkFrameSections.add(readSection(dataBuffer, frame.compressedLength, frame.uncompressedLength, compressedSections));
+                }
+            } else {
+                chunkSection = readSection(dataBuffer, worldName, compressedSections);
+            }
 
-            // Entities
-            byte[] compressedEntities = new byte[0];
-            byte[] entities = new byte[0];
+            // Tile Entities and Entities, which are stored inside each chunk since v13
+            CompressedSection tileEntitiesSection = CompressedSection.EMPTY;
+            CompressedSection entitiesSection = CompressedSection.EMPTY;
 
-            if (version >= 3) {
-                boolean hasEntities = dataStream.readBoolean();
+            if (version < 13) {
+                tileEntitiesSection = readSection(dataBuffer, worldName, compressedSections);
 
-                if (hasEntities) {
-                    int compressedEntitiesLength = dataStream.readInt();
-                    int entitiesLength = dataStream.readInt();
-                    compressedEntities = new byte[compressedEntitiesLength];
-                    entities = new byte[entitiesLength];
+                if (version >= 3) {
+                    boolean hasEntities = dataBuffer.get() != 0;
 
-                    dataStream.read(compressedEntities);
+                    if (hasEntities) {
+                        entitiesSection = readSection(dataBuffer, worldName, compressedSections);
+                    }
                 }
             }
 
             // Extra NBT tag
-            byte[] compressedExtraTag = new byte[0];
-            byte[] extraTag = new byte[0];
+            CompressedSection extraTagSection = CompressedSection.EMPTY;
 
             if (version >= 2) {
-                int compressedExtraTagLength = dataStream.readInt();
-                int extraTagLength = dataStream.readInt();
-                compressedExtraTag = new byte[compressedExtraTagLength];
-                extraTag = new byte[extraTagLength];
-
-                dataStream.read(compressedExtraTag);
+                extraTagSection = readSection(dataBuffer, worldName, compressedSections);
             }
 
             // World Map NBT tag
-            byte[] compressedMapsTag = new byte[0];
-            byte[] mapsTag = new byte[0];
+            CompressedSection mapsTagSection = CompressedSection.EMPTY;
 
             if (version >= 7) {
-                int compressedMapsTagLength = dataStream.readInt();
-                int mapsTagLength = dataStream.readInt();
-                compressedMapsTag = new byte[compressedMapsTagLength];
-                mapsTag = new byte[mapsTagLength];
-
-                dataStream.read(compressedMapsTag);
+                mapsTagSection = readSection(dataBuffer, worldName, compressedSections);
             }
 
-            if (dataStream.read() != -1) {
+            if (dataBuffer.hasRemaining()) {
                 throw new CorruptedWorldException(worldName);
             }
 
-            // Data decompression
-            Zstd.decompress(chunkData, compressedChunkData);
-            Zstd.decompress(tileEntities, compressedTileEntities);
-            Zstd.decompress(entities, compressedEntities);
-            Zstd.decompress(extraTag, compressedExtraTag);
-            Zstd.decompress(mapsTag, compressedMapsTag);
+            // Data decompression. Sections don't depend on each other, so they're decompressed
+            // (and their NBT parsed) concurrently, while the chunks are being decoded. Each
+            // decompression task gives its compressed section back to the pool on its own
+            compressedSections.clear();
+            CompletableFuture<CompoundTag> blockStatesFuture = readCompoundTagAsync(blockStatesSection, dictionary);
+            CompletableFuture<byte[]> chunkDataFuture = chunkFrames == null ? decompressAsync(chunkSection, dictionary) : null;
+            List<CompletableFuture<byte[]>> chunkFrameFutures = new ArrayList<>(chunkFrameSections.size());
+
+            for (CompressedSection frameSection : chunkFrameSections) {
+                chunkFrameFutures.add(decompressAsync(frameSection, dictionary));
+            }
+
+            if (chunkDataFuture != null) {
+                chunkDataFutures.add(chunkDataFuture);
+            }
+
+            chunkDataFutures.addAll(chunkFrameFutures);
+
+            CompletableFuture<CompoundTag> tileEntitiesFuture = readCompoundTagAsync(tileEntitiesSection, dictionary);
+            CompletableFuture<CompoundTag> entitiesFuture = readCompoundTagAsync(entitiesSection, dictionary);
+            CompletableFuture<CompoundTag> extraTagFuture = readCompoundTagAsync(extraTagSection, dictionary);
+            CompletableFuture<CompoundTag> mapsTagFuture = readCompoundTagAsync(mapsTagSection, dictionary);
+
+            // Block states, shared by every section palette that references them. Older
+            // versions store the palette entries inside each section instead
+            CompoundTag blockStatesCompound = join(blockStatesFuture);
+            List<CompoundTag> blockStates;
+
+            if (blockStatesCompound != null) {
+                blockStates = (List<CompoundTag>) blockStatesCompound.getAsListTag("blockStates").map(ListTag::getValue).orElse(new ArrayList<>());
+            } else {
+                blockStates = new ArrayList<>();
+            }
+
+            // Sections keep their palette entries as binary NBT, the form both saving the world and loading
+            // its chunks into the server work with, so every block state is only serialized once
+            byte[][] serializedStates = serializeBlockStates(blockStates);
+
+            // Extra Data
+            CompoundTag extraCompound = join(extraTagFuture);
+
+            if (extraCompound == null) {
+                extraCompound = new CompoundTag("", new CompoundMap());
+            }
+
+            // World properties
+            SlimePropertyMap worldPropertyMap = propertyMap;
+            Optional<CompoundMap> propertiesMap = extraCompound
+                .getAsCompoundTag("properties")
+                .map(CompoundTag::getValue);
+
+            if (propertiesMap.isPresent()) {
+                worldPropertyMap = new SlimePropertyMap(propertiesMap.get());
+                worldPropertyMap.merge(propertyMap); // Override world properties
+            } else if (propertyMap == null) { // Make sure the property map is never null
+                worldPropertyMap = new SlimePropertyMap();
+            }
 
             // Chunk deserialization
-            Map<Long, SlimeChunk> chunks = readChunks(worldVersion, version, worldName, minX, minZ, width, depth, chunkBitset, chunkData);
+            boolean lazyChunks = worldPropertyMap.getValue(SlimeProperties.LAZY_CHUNKS);
+            ChunkIndex chunks;
+
+            chunkDataFutures.clear();
+
+            if (chunkFrames != null) {
+                chunks = readChunkFrames(worldVersion, version, worldName, blockStates, serializedStates, chunkXs, chunkZs, chunkFrames, chunkFrameFutures, lazyChunks);
+            } else {
+                byte[] chunkData = join(chunkDataFuture);
+
+                try {
+                    chunks = readChunks(worldVersion, version, worldName, chunkXs, chunkZs, blockStates, serializedStates, chunkData, chunkSection.uncompressedLength, lazyChunks);
+                } finally {
+                    BufferPool.release(chunkData);
+                }
+            }
 
             // Entity deserialization
-            CompoundTag entitiesCompound = readCompoundTag(entities);
+            CompoundTag entitiesCompound = join(entitiesFuture);
 
             if (entitiesCompound != null) {
                 ListTag<CompoundTag> entitiesList = (ListTag<CompoundTag>) entitiesCompound.getValue().get("entities");
@@ -247,8 +421,7 @@ public class LoaderUtils {
 
                     int chunkX = floor(listTag.getValue().get(0).getValue()) >> 4;
                     int chunkZ = floor(listTag.getValue().get(2).getValue()) >> 4;
-                    long chunkKey = ((long) chunkZ) * Integer.MAX_VALUE + ((long) chunkX);
-                    SlimeChunk chunk = chunks.get(chunkKey);
+                    SlimeChunk chunk = chunks.get(chunkX, chunkZ);
 
                     if (chunk == null) {
                         throw new CorruptedWorldException(worldName);
@@ -259,15 +432,14 @@ public class LoaderUtils {
             }
 
             // Tile Entity deserialization
-            CompoundTag tileEntitiesCompound = readCompoundTag(tileEntities);
+            CompoundTag tileEntitiesCompound = join(tileEntitiesFuture);
 
             if (tileEntitiesCompound != null) {
                 ListTag<CompoundTag> tileEntitiesList = (ListTag<CompoundTag>) tileEntitiesCompound.getValue().get("tiles");
                 for (CompoundTag tileEntityCompound : tileEntitiesList.getValue()) {
                     int chunkX = ((IntTag) tileEntityCompound.getValue().get("x")).getValue() >> 4;
                     int chunkZ = ((IntTag) tileEntityCompound.getValue().get("z")).getValue() >> 4;
-                    long chunkKey = ((long) chunkZ) * Integer.MAX_VALUE + ((long) chunkX);
-                    SlimeChunk chunk = chunks.get(chunkKey);
+                    SlimeChunk chunk = chunks.get(chunkX, chunkZ);
 
                     if (chunk == null) {
                         throw new CorruptedWorldException(worldName);
@@ -277,15 +449,8 @@ public class LoaderUtils {
                 }
             }
 
-            // Extra Data
-            CompoundTag extraCompound = readCompoundTag(extraTag);
-
-            if (extraCompound == null) {
-                extraCompound = new CompoundTag("", new CompoundMap());
-            }
-
             // World Maps
-            CompoundTag mapsCompound = readCompoundTag(mapsTag);
+            CompoundTag mapsCompound = join(mapsTagFuture);
             List<CompoundTag> mapList;
 
             if (mapsCompound != null) {
@@ -308,22 +473,24 @@ public class LoaderUtils {
                 }
             }
 
-            // World properties
-            SlimePropertyMap worldPropertyMap = propertyMap;
-            Optional<CompoundMap> propertiesMap = extraCompound
-                .getAsCompoundTag("properties")
-                .map(CompoundTag::getValue);
+            CraftSlimeWorld world = new CraftSlimeWorld(loader, worldName, chunks, extraCompound, mapList, worldVersion, worldPropertyMap, readOnly, !readOnly);
 
-            if (propertiesMap.isPresent()) {
-                worldPropertyMap = new SlimePropertyMap(propertiesMap.get());
-                worldPropertyMap.merge(propertyMap); // Override world properties
-            } else if (propertyMap == null) { // Make sure the property map is never null
-                worldPropertyMap = new SlimePropertyMap();
+            if (lazyChunks) {
+                world.preloadBlockStates(blockStates, serializedStates);
             }
 
-            return new CraftSlimeWorld(loader, worldName, chunks, extraCompound, mapList, worldVersion, worldPropertyMap, readOnly, !readOnly);
-        } catch (EOFException ex) {
+            return world;
+        } catch (EOFException | BufferUnderflowException | CorruptedDataException ex) {
             throw new CorruptedWorldException(worldName, ex);
+        } finally {
+            for (CompressedSection section : compressedSections) {
+                BufferPool.release(section.data);
+            }
+
+            // Chunk data that fails to decompress has already been given back
+            for (CompletableFuture<byte[]> future : chunkDataFutures) {
+                future.thenAccept(BufferPool::release);
+            }
         }
     }
 
@@ -332,72 +499,507 @@ public class LoaderUtils {
         return floor == num ? floor : floor - (int) (Double.doubleToRawLongBits(num) >>> 63);
     }
 
-    private static Map<Long, SlimeChunk> readChunks(byte worldVersion, int version, String worldName, int minX, int minZ, int width, int depth, BitSet chunkBitset, byte[] chunkData) throws IOException {
-        DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(chunkData));
-        Map<Long, SlimeChunk> chunkMap = new HashMap<>();
+    private static CompressedSection readSection(ByteBuffer dataBuffer, String worldName, List<CompressedSection> readSections) throws CorruptedWorldException {
+        int compressedLength = dataBuffer.getInt();
+        int uncompressedLength = dataBuffer.getInt();
 
-        for (int z = 0; z < depth; z++) {
-            for (int x = 0; x < width; x++) {
-                int bitsetIndex = z * width + x;
+        if (compressedLength < 0 || uncompressedLength < 0) {
+            throw new CorruptedWorldException(worldName);
+        }
 
-                if (chunkBitset.get(bitsetIndex)) {
-                    // Height Maps
-                    CompoundTag heightMaps;
+        return readSection(dataBuffer, compressedLength, uncompressedLength, readSections);
+    }
 
-                    if (worldVersion >= 0x04) {
-                        int heightMapsLength = dataStream.readInt();
-                        byte[] heightMapsArray = new byte[heightMapsLength];
-                        dataStream.read(heightMapsArray);
-                        heightMaps = readCompoundTag(heightMapsArray);
-
-                        // Height Maps might be null if empty
-                        if (heightMaps == null) {
-                            heightMaps = new CompoundTag("", new CompoundMap());
-                        }
-                    } else {
-                        int[] heightMap = new int[256];
+    private static CompressedSection readSection(ByteBuffer dataBuffer, int compressedLength, int uncompressedLength, List<CompressedSection> readSections) {
+        if (compressedLength > dataBuffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
 
-                        for (int i = 0; i < 256; i++) {
-                            heightMap[i] = dataStream.readInt();
-                        }
+        byte[] compressedData = BufferPool.acquire(compressedLength);
+        dataBuffer.get(compressedData, 0, compressedLength);
 
-                        CompoundMap map = new CompoundMap();
-                        map.put("heightMap", new IntArrayTag("heightMap", heightMap));
+        CompressedSection section = new CompressedSection(compressedData, compressedLength, uncompressedLength);
+        readSections.add(section);
 
-                        heightMaps = new CompoundTag("", map);
-                    }
+        return section;
+    }
 
-                    // Biome array
-                    int[] biomes;
+    private static CompletableFuture<byte[]> decompressAsync(CompressedSection section, ZstdDictionary dictionary) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return decompress(section, dictionary);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, DESERIALIZATION_POOL);
+    }
 
-                    if (version == 8 && worldVersion < 0x04) {
-                        // Patch the v8 bug: biome array size is wrong for old worlds
-                        dataStream.readInt();
-                    }
+    private static CompletableFuture<CompoundTag> readCompoundTagAsync(CompressedSection section, ZstdDictionary dictionary) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                byte[] serializedCompound = decompress(section, dictionary);
 
-                    if (worldVersion >= 0x04) {
-                        int biomesArrayLength = version >= 8 ? dataStream.readInt() : 256;
-                        biomes = new int[biomesArrayLength];
+                try {
+                    return readCompoundTag(serializedCompound, section.uncompressedLength);
+                } finally {
+                    BufferPool.release(serializedCompound);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, DESERIALIZATION_POOL);
+    }
+
+    /**
+     * Decompresses a section into a pooled array, which has to be given back to the
+     * {@link BufferPool} once it's not needed anymore. The compressed data is given back
+     * right away. Only the first {@code uncompressedLength} bytes of the array are valid.
+     */
+    private static byte[] decompress(CompressedSection section, ZstdDictionary dictionary) throws IOException {
+        try {
+            if (section.uncompressedLength == 0) {
+                return new byte[0];
+            }
+
+            byte[] data = BufferPool.acquire(section.uncompressedLength);
+
+            try {
+                int length = ZstdCodec.decompress(data, 0, section.uncompressedLength, section.data, 0, section.length, dictionary);
 
-                        for (int i = 0; i < biomes.length; i++) {
-                            biomes[i] = dataStream.readInt();
+                if (length != section.uncompressedLength) {
+                    throw new CorruptedDataException("Expected " + section.uncompressedLength + " bytes of decompressed data, got " + length);
+                }
+            } catch (IOException ex) {
+                BufferPool.release(data);
+                throw ex;
+            }
+
+            return data;
+        } finally {
+            BufferPool.release(section.data);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Merges the chunks decoded by each task in the order they were written, so the result doesn't depend
+     * on scheduling. If a task fails, the exception is only thrown once every other task is done, so none
+     * of them is still reading a pooled buffer by the time the caller gives it back.
+     */
+    private static List<SlimeChunk> joinChunks(List<CompletableFuture<List<SlimeChunk>>> tasks, int chunkCount) throws IOException {
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).handle((result, ex) -> null).join();
+
+        List<SlimeChunk> chunkList = new ArrayList<>(chunkCount);
+
+        for (CompletableFuture<List<SlimeChunk>> task : tasks) {
+            chunkList.addAll(join(task));
+        }
+
+        return chunkList;
+    }
+
+    /**
+     * Reads the chunk index, which tells how many chunks each frame contains and
+     * where every one of them is inside its frame, and makes sure it's consistent.
+     */
+    private static List<ChunkFrame> readChunkIndex(ByteBuffer dataBuffer, String worldName, int chunkCount) throws CorruptedWorldException {
+        // Frames are never empty, so there can't be more frames than chunks
+        int frameCount = dataBuffer.getInt();
+
+        if (frameCount < 0 || frameCount > chunkCount) {
+            throw new CorruptedWorldException(worldName);
+        }
+
+        int[] frameChunkCounts = new int[frameCount];
+        int[] compressedLengths = new int[frameCount];
+        int[] uncompressedLengths = new int[frameCount];
+        int indexedChunks = 0;
+
+        for (int frame = 0; frame < frameCount; frame++) {
+            frameChunkCounts[frame] = dataBuffer.getInt();
+            compressedLengths[frame] = dataBuffer.getInt();
+            uncompressedLengths[frame] = dataBuffer.getInt();
+
+            if (frameChunkCounts[frame] <= 0 || frameChunkCounts[frame] > chunkCount - indexedChunks
+                    || compressedLengths[frame] < 0 || uncompressedLengths[frame] < 0) {
+                throw new CorruptedWorldException(worldName);
+            }
+
+            indexedChunks += frameChunkCounts[frame];
+        }
+
+        if (indexedChunks != chunkCount) {
+            throw new CorruptedWorldException(worldName);
+        }
+
+        List<ChunkFrame> frames = new ArrayList<>(frameCount);
+        int firstChunk = 0;
+
+        for (int frame = 0; frame < frameCount; frame++) {
+            int[] chunkOffsets = new int[frameChunkCounts[frame] + 1];
+
+            for (int chunk = 0; chunk < frameChunkCounts[frame]; chunk++) {
+                int chunkLength = dataBuffer.getInt();
+
+                if (chunkLength < 0 || chunkLength > uncompressedLengths[frame] - chunkOffsets[chunk]) {
+                    throw new CorruptedWorldException(worldName);
+                }
+
+                chunkOffsets[chunk + 1] = chunkOffsets[chunk] + chunkLength;
+            }
+
+            if (chunkOffsets[frameChunkCounts[frame]] != uncompressedLengths[frame]) {
+                throw new CorruptedWorldException(worldName);
+            }
+
+            frames.add(new ChunkFrame(firstChunk, chunkOffsets, compressedLengths[frame], uncompressedLengths[frame]));
+            firstChunk += frameChunkCounts[frame];
+        }
+
+        return frames;
+    }
+
+    /**
+     * Decodes the chunks of every frame as soon as the frame has been decompressed.
+     * Frames don't depend on each other, so they're all decoded in parallel.
+     */
+    private static ChunkIndex readChunkFrames(byte worldVersion, int version, String worldName, List<CompoundTag> blockStates,
+                                              byte[][] serializedStates, int[] chunkXs, int[] chunkZs, List<ChunkFrame> frames,
+                                              List<CompletableFuture<byte[]>> frameData, boolean lazy) throws IOException {
+        List<CompletableFuture<List<SlimeChunk>>> decodedFrames = new ArrayList<>(frames.size());
+
+        for (int i = 0; i < frames.size(); i++) {
+            ChunkFrame frame = frames.get(i);
+
+            decodedFrames.add(frameData.get(i).thenApplyAsync(data -> {
+                try {
+                    return readChunkFrame(frame, data, worldVersion, version, worldName, blockStates, serializedStates, chunkXs, chunkZs, lazy);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } finally {
+                    BufferPool.release(data);
+                }
+            }, DESERIALIZATION_POOL));
+        }
+
+        return new ChunkIndex(joinChunks(decodedFrames, chunkXs.length));
+    }
+
+    private static List<SlimeChunk> readChunkFrame(ChunkFrame frame, byte[] frameData, byte worldVersion, int version, String worldName,
+                                                   List<CompoundTag> blockStates, byte[][] serializedStates, int[] chunkXs, int[] chunkZs,
+                                                   boolean lazy) throws IOException {
+        int chunkCount = frame.chunkOffsets.length - 1;
+        List<SlimeChunk> chunkList = new ArrayList<>(chunkCount);
+
+        if (lazy) {
+            // The frame is kept for as long as the world is loaded, so it can't stay inside a pooled array
+            byte[] data = Arrays.copyOf(frameData, frame.uncompressedLength);
+            LazySlimeChunk.Source source = new LazySlimeChunk.Source(worldName, data, version, worldVersion, blockStates,
+                    (buffer, x, z) -> readChunk(buffer, worldVersion, version, worldName, serializedStates, x, z));
+
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int offset = frame.chunkOffsets[chunk];
+                int length = frame.chunkOffsets[chunk + 1] - offset;
+
+                chunkList.add(new LazySlimeChunk(source, chunkXs[frame.firstChunk + chunk], chunkZs[frame.firstChunk + chunk], offset, length));
+            }
+        } else {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int offset = frame.chunkOffsets[chunk];
+                int length = frame.chunkOffsets[chunk + 1] - offset;
+                int x = chunkXs[frame.firstChunk + chunk];
+                int z = chunkZs[frame.firstChunk + chunk];
+
+                ByteBuffer buffer = ByteBuffer.wrap(frameData, offset, length);
+                chunkList.add(readChunk(buffer, worldVersion, version, worldName, serializedStates, x, z));
+
+                if (buffer.hasRemaining()) {
+                    throw new CorruptedDataException("Chunk (" + x + ", " + z + ") doesn't match its size in the chunk index");
+                }
+            }
+        }
+
+        return chunkList;
+    }
+
+    private static ChunkIndex readChunks(byte worldVersion, int version, String worldName, int[] chunkXs, int[] chunkZs,
+                                         List<CompoundTag> blockStates, byte[][] serializedStates, byte[] chunkData, int chunkDataLength,
+                                         boolean lazy) throws IOException {
+        int chunkCount = chunkXs.length;
+
+        if (lazy) {
+            return readLazyChunks(worldVersion, version, worldName, blockStates, serializedStates, chunkXs, chunkZs, chunkData, chunkDataLength);
+        }
+
+        if (chunkCount < PARALLEL_DECODE_THRESHOLD) {
+            ByteBuffer buffer = ByteBuffer.wrap(chunkData, 0, chunkDataLength);
+
+            return new ChunkIndex(readChunkRange(buffer, worldVersion, version, worldName, serializedStates, chunkXs, chunkZs, 0, chunkCount));
+        }
+
+        // Split the chunks into ranges. Each range gets decoded by a different worker as
+        // soon as the chunks before it have been skipped over and its offset is known
+        int rangeSize = Math.max(PARALLEL_DECODE_THRESHOLD / 2, (chunkCount + DESERIALIZATION_POOL.getParallelism() - 1) / DESERIALIZATION_POOL.getParallelism());
+        List<CompletableFuture<List<SlimeChunk>>> ranges = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(chunkData, 0, chunkDataLength);
+
+        for (int start = 0; start < chunkCount; start += rangeSize) {
+            int end = Math.min(start + rangeSize, chunkCount);
+            int offset = buffer.position();
+
+            for (int i = start; i < end; i++) {
+                skipChunk(buffer, worldVersion, version);
+            }
+
+            int length = buffer.position() - offset;
+            int rangeStart = start;
+
+            ranges.add(CompletableFuture.supplyAsync(() -> {
+                ByteBuffer rangeBuffer = ByteBuffer.wrap(chunkData, offset, length);
+
+                try {
+                    return readChunkRange(rangeBuffer, worldVersion, version, worldName, serializedStates, chunkXs, chunkZs, rangeStart, end);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, DESERIALIZATION_POOL));
+        }
+
+        return new ChunkIndex(joinChunks(ranges, chunkCount));
+    }
+
+    /**
+     * Indexes the chunks without decoding them. Each chunk keeps track of where
+     * its data is, and gets decoded the first time its contents are accessed.
+     */
+    private static ChunkIndex readLazyChunks(byte worldVersion, int version, String worldName, List<CompoundTag> blockStates,
+                                             byte[][] serializedStates, int[] chunkXs, int[] chunkZs, byte[] chunkData, int chunkDataLength) throws IOException {
+        // The chunk data is kept for as long as the world is loaded, so it can't stay inside a pooled array
+        byte[] data = Arrays.copyOf(chunkData, chunkDataLength);
+        LazySlimeChunk.Source source = new LazySlimeChunk.Source(worldName, data, version, worldVersion, blockStates,
+                (buffer, x, z) -> readChunk(buffer, worldVersion, version, worldName, serializedStates, x, z));
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<SlimeChunk> chunkList = new ArrayList<>(chunkXs.length);
+
+        for (int chunkIndex = 0; chunkIndex < chunkXs.length; chunkIndex++) {
+            int offset = buffer.position();
+            skipChunk(buffer, worldVersion, version);
+
+            chunkList.add(new LazySlimeChunk(source, chunkXs[chunkIndex], chunkZs[chunkIndex], offset, buffer.position() - offset));
+        }
+
+        return new ChunkIndex(chunkList);
+    }
+
+    private static List<SlimeChunk> readChunkRange(ByteBuffer buffer, byte worldVersion, int version, String worldName,
+                                                   byte[][] serializedStates, int[] chunkXs, int[] chunkZs, int start, int end) throws IOException {
+        List<SlimeChunk> chunkList = new ArrayList<>(end - start);
+
+        for (int chunkIndex = start; chunkIndex < end; chunkIndex++) {
+            chunkList.add(readChunk(buffer, worldVersion, version, worldName, serializedStates, chunkXs[chunkIndex], chunkZs[chunkIndex]));
+        }
+
+        return chunkList;
+    }
+
+    private static CraftSlimeChunk readChunk(ByteBuffer buffer, byte worldVersion, int version, String worldName,
+                                             byte[][] serializedStates, int x, int z) throws IOException {
+        try {
+            // Height Maps
+            CompoundTag heightMaps;
+
+            if (worldVersion >= 0x04) {
+                int heightMapsLength = buffer.getInt();
+                heightMaps = readCompoundTag(buffer, heightMapsLength);
+
+                // Height Maps might be null if empty
+                if (heightMaps == null) {
+                    heightMaps = new CompoundTag("", new CompoundMap());
+                }
+            } else {
+                int[] heightMap = readInts(buffer, 256);
+
+                CompoundMap map = new CompoundMap();
+                map.put("heightMap", new IntArrayTag("heightMap", heightMap));
+
+                heightMaps = new CompoundTag("", map);
+            }
+
+            // Biome array
+            int[] biomes;
+
+            if (version == 8 && worldVersion < 0x04) {
+                // Patch the v8 bug: biome array size is wrong for old worlds
+                buffer.getInt();
+            }
+
+            if (worldVersion >= 0x04) {
+                int biomesArrayLength = version >= 8 ? buffer.getInt() : 256;
+                biomes = readInts(buffer, biomesArrayLength);
+            } else {
+                byte[] byteBiomes = readBytes(buffer, 256);
+                biomes = toIntArray(byteBiomes);
+            }
+
+            // Chunk Sections
+            SlimeChunkSection[] sections = readChunkSections(buffer, worldVersion, version, serializedStates);
+
+            // Tile Entities and Entities
+            List<CompoundTag> tileEntities = new ArrayList<>();
+            List<CompoundTag> entities = new ArrayList<>();
+
+            if (version >= 13) {
+                readEntityList(buffer, "tiles", tileEntities);
+                readEntityList(buffer, "entities", entities);
+            }
+
+            return new CraftSlimeChunk(worldName, x, z, sections, heightMaps, biomes, tileEntities, entities);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new EOFException();
+        }
+    }
+
+    private static void readEntityList(ByteBuffer buffer, String listName, List<CompoundTag> entities) throws IOException {
+        int compoundLength = buffer.getInt();
+        CompoundTag compound = readCompoundTag(buffer, compoundLength);
+
+        if (compound != null) {
+            entities.addAll((List<CompoundTag>) compound.getAsListTag(listName).map(ListTag::getValue).orElse(new ArrayList<>()));
+        }
+    }
+
+    /**
+     * Moves the buffer past a single chunk without decoding
+     * it, mirroring the reads done by {@link #readChunk}.
+     */
+    private static void skipChunk(ByteBuffer buffer, byte worldVersion, int version) throws EOFException {
+        try {
+            // Height Maps
+            if (worldVersion >= 0x04) {
+                skip(buffer, buffer.getInt());
+            } else {
+                skip(buffer, 256 * Integer.BYTES);
+            }
+
+            // Biome array
+            if (version == 8 && worldVersion < 0x04) {
+                buffer.getInt();
+            }
+
+            if (worldVersion >= 0x04) {
+                int biomesArrayLength = version >= 8 ? buffer.getInt() : 256;
+                skip(buffer, biomesArrayLength * Integer.BYTES);
+            } else {
+                skip(buffer, 256);
+            }
+
+            // Chunk Sections
+            byte[] sectionBitmask = new byte[2];
+            buffer.get(sectionBitmask);
+            BitSet sectionBitset = BitSet.valueOf(sectionBitmask);
+
+            for (int i = 0; i < 16; i++) {
+                if (sectionBitset.get(i)) {
+                    // Block Light
+                    skipLightArray(buffer, version);
+
+                    // Block data
+                    if (worldVersion >= 0x04) {
+                        if (version >= 11) {
+                            int paletteLength = VarInts.read(buffer);
+
+                            for (int index = 0; index < paletteLength; index++) {
+                                VarInts.read(buffer);
+                            }
+                        } else {
+                            int paletteLength = buffer.getInt();
+
+                            for (int index = 0; index < paletteLength; index++) {
+                                skip(buffer, buffer.getInt());
+                            }
                         }
+
+                        skip(buffer, buffer.getInt() * Long.BYTES);
                     } else {
-                        byte[] byteBiomes = new byte[256];
-                        dataStream.read(byteBiomes);
-                        biomes = toIntArray(byteBiomes);
+                        skip(buffer, 4096 + 2048);
                     }
 
-                    // Chunk Sections
-                    SlimeChunkSection[] sections = readChunkSections(dataStream, worldVersion, version);
+                    // Sky Light
+                    skipLightArray(buffer, version);
 
-                    chunkMap.put(((long) minZ + z) * Integer.MAX_VALUE + ((long) minX + x), new CraftSlimeChunk(worldName,minX + x, minZ + z,
-                            sections, heightMaps, biomes, new ArrayList<>(), new ArrayList<>()));
+                    // HypixelBlocks 3
+                    if (version < 4) {
+                        skip(buffer, buffer.getShort());
+                    }
                 }
             }
+
+            // Tile Entities and Entities
+            if (version >= 13) {
+                skip(buffer, buffer.getInt());
+                skip(buffer, buffer.getInt());
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new EOFException();
+        }
+    }
+
+    private static void skipLightArray(ByteBuffer buffer, int version) {
+        if (version < 5) {
+            skip(buffer, 2048);
+            return;
+        }
+
+        int flag = buffer.get() & 0xFF;
+
+        // Uniform light arrays are stored as their flag alone
+        if (flag != 0 && (version < 14 || (flag & SlimeFormat.UNIFORM_LIGHT_FLAG) == 0)) {
+            skip(buffer, 2048);
+        }
+    }
+
+    private static NibbleArray readLightArray(ByteBuffer buffer, int version) {
+        if (version < 5) {
+            return new NibbleArray(readBytes(buffer, 2048));
+        }
+
+        int flag = buffer.get() & 0xFF;
+
+        if (flag == 0) {
+            return null;
+        }
+
+        if (version >= 14 && (flag & SlimeFormat.UNIFORM_LIGHT_FLAG) != 0) {
+            return NibbleArray.uniform(flag & 0xF);
         }
 
-        return chunkMap;
+        return new NibbleArray(readBytes(buffer, 2048));
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
     }
 
     private static int[] toIntArray(byte[] buf) {
@@ -409,102 +1011,199 @@ public class LoaderUtils {
         return ret;
     }
 
-    private static SlimeChunkSection[] readChunkSections(DataInputStream dataStream, byte worldVersion, int version) throws IOException {
+    private static SlimeChunkSection[] readChunkSections(ByteBuffer buffer, byte worldVersion, int version,
+                                                         byte[][] serializedStates) throws IOException {
         SlimeChunkSection[] chunkSectionArray = new SlimeChunkSection[16];
-        byte[] sectionBitmask = new byte[2];
-        dataStream.read(sectionBitmask);
+        byte[] sectionBitmask = readBytes(buffer, 2);
         BitSet sectionBitset = BitSet.valueOf(sectionBitmask);
 
         for (int i = 0; i < 16; i++) {
             if (sectionBitset.get(i)) {
                 // Block Light Nibble Array
-                NibbleArray blockLightArray;
-
-                if (version < 5 || dataStream.readBoolean()) {
-                    byte[] blockLightByteArray = new byte[2048];
-                    dataStream.read(blockLightByteArray);
-                    blockLightArray = new NibbleArray((blockLightByteArray));
-                } else {
-                    blockLightArray = null;
-                }
+                NibbleArray blockLightArray = readLightArray(buffer, version);
 
                 // Block data
                 byte[] blockArray;
                 NibbleArray dataArray;
 
-                ListTag<CompoundTag> paletteTag;
+                ListTag<CompoundTag> paletteTag = null;
+                byte[][] serializedPalette = null;
                 long[] blockStatesArray;
 
                 // Post 1.13 block format
                 if (worldVersion >= 0x04) {
                     // Palette
-                    int paletteLength = dataStream.readInt();
-                    List<CompoundTag> paletteList = new ArrayList<>(paletteLength);
+                    if (version >= 11) {
+                        int paletteLength = VarInts.read(buffer);
+                        serializedPalette = new byte[paletteLength][];
 
-                    for (int index = 0; index < paletteLength; index++) {
-                        int tagLength = dataStream.readInt();
-                        byte[] serializedTag = new byte[tagLength];
-                        dataStream.read(serializedTag);
+                        for (int index = 0; index < paletteLength; index++) {
+                            int stateIndex = VarInts.read(buffer);
 
-                        paletteList.add(readCompoundTag(serializedTag));
-                    }
+                            if (stateIndex < 0 || stateIndex >= serializedStates.length) {
+                                throw new CorruptedDataException("Block state " + stateIndex + " is not in the block states table");
+                            }
 
-                    paletteTag = new ListTag<>("", TagType.TAG_COMPOUND, paletteList);
+                            serializedPalette[index] = serializedStates[stateIndex];
+                        }
+                    } else {
+                        int paletteLength = buffer.getInt();
+                        List<CompoundTag> paletteList = new ArrayList<>(paletteLength);
 
-                    // Block states
-                    int blockStatesArrayLength = dataStream.readInt();
-                    blockStatesArray = new long[blockStatesArrayLength];
+                        for (int index = 0; index < paletteLength; index++) {
+                            int tagLength = buffer.getInt();
 
-                    for (int index = 0; index < blockStatesArrayLength; index++) {
-                        blockStatesArray[index] = dataStream.readLong();
+                            paletteList.add(readCompoundTag(buffer, tagLength));
+                        }
+
+                        paletteTag = new ListTag<>("", TagType.TAG_COMPOUND, paletteList);
                     }
 
+                    // Block states
+                    int blockStatesArrayLength = buffer.getInt();
+                    blockStatesArray = readLongs(buffer, blockStatesArrayLength);
+
                     blockArray = null;
                     dataArray = null;
                 } else {
-                    blockArray = new byte[4096];
-                    dataStream.read(blockArray);
+                    blockArray = readBytes(buffer, 4096);
 
                     // Block Data Nibble Array
-                    byte[] dataByteArray = new byte[2048];
-                    dataStream.read(dataByteArray);
-                    dataArray = new NibbleArray((dataByteArray));
+                    dataArray = new NibbleArray(readBytes(buffer, 2048));
 
-                    paletteTag = null;
                     blockStatesArray = null;
                 }
 
                 // Sky Light Nibble Array
-                NibbleArray skyLightArray;
-
-                if (version < 5 || dataStream.readBoolean()) {
-                    byte[] skyLightByteArray = new byte[2048];
-                    dataStream.read(skyLightByteArray);
-                    skyLightArray = new NibbleArray((skyLightByteArray));
-                } else {
-                    skyLightArray = null;
-                }
+                NibbleArray skyLightArray = readLightArray(buffer, version);
 
                 // HypixelBlocks 3
                 if (version < 4) {
-                    short hypixelBlocksLength = dataStream.readShort();
-                    dataStream.skip(hypixelBlocksLength);
+                    short hypixelBlocksLength = buffer.getShort();
+                    skip(buffer, hypixelBlocksLength);
                 }
 
-                chunkSectionArray[i] = new CraftSlimeChunkSection(blockArray, dataArray, paletteTag, blockStatesArray, blockLightArray, skyLightArray);
+                if (serializedPalette != null) {
+                    chunkSectionArray[i] = new CraftSlimeChunkSection(serializedPalette, blockStatesArray, blockLightArray, skyLightArray);
+                } else {
+                    chunkSectionArray[i] = new CraftSlimeChunkSection(blockArray, dataArray, paletteTag, blockStatesArray, blockLightArray, skyLightArray);
+                }
             }
         }
 
         return chunkSectionArray;
     }
 
-    private static CompoundTag readCompoundTag(byte[] serializedCompound) throws IOException {
-        if (serializedCompound.length == 0) {
+    private static byte[][] serializeBlockStates(List<CompoundTag> blockStates) throws IOException {
+        byte[][] serializedStates = new byte[blockStates.size()][];
+
+        for (int i = 0; i < serializedStates.length; i++) {
+            serializedStates[i] = WorldPalette.serialize(blockStates.get(i));
+        }
+
+        return serializedStates;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int length) {
+        byte[] values = new byte[length];
+        buffer.get(values);
+
+        return values;
+    }
+
+    // Primitive arrays are copied in bulk through a view of the buffer, which has to be moved past them afterwards
+
+    private static int[] readInts(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining() / Integer.BYTES) {
+            throw new BufferUnderflowException();
+        }
+
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        skip(buffer, length * Integer.BYTES);
+
+        return values;
+    }
+
+    private static long[] readLongs(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining() / Long.BYTES) {
+            throw new BufferUnderflowException();
+        }
+
+        long[] values = new long[length];
+        buffer.asLongBuffer().get(values);
+        skip(buffer, length * Long.BYTES);
+
+        return values;
+    }
+
+    private static CompoundTag readCompoundTag(byte[] serializedCompound, int length) throws IOException {
+        return readCompoundTag(serializedCompound, 0, length);
+    }
+
+    private static CompoundTag readCompoundTag(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        CompoundTag tag = readCompoundTag(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        skip(buffer, length);
+
+        return tag;
+    }
+
+    private static CompoundTag readCompoundTag(byte[] serializedCompound, int offset, int length) throws IOException {
+        if (length == 0) {
             return null;
         }
 
-        NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(serializedCompound), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+        NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(serializedCompound, offset, length), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
 
         return (CompoundTag) stream.readTag();
     }
+
+    private static class ChunkFrame {
+
+        // Index of the first chunk of the frame, in the order they were written
+        private final int firstChunk;
+
+        // Offset of every chunk inside the uncompressed frame, followed by the frame size
+        private final int[] chunkOffsets;
+
+        private final int compressedLength;
+        private final int uncompressedLength;
+
+        private ChunkFrame(int firstChunk, int[] chunkOffsets, int compressedLength, int uncompressedLength) {
+            this.firstChunk = firstChunk;
+            this.chunkOffsets = chunkOffsets;
+            this.compressedLength = compressedLength;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+
+    /**
+     * Thrown while decoding a data file whose contents don't make sense, so it's reported as a
+     * {@link CorruptedWorldException}. Decoding runs inside tasks that can only throw {@link IOException}s.
+     */
+    private static class CorruptedDataException extends IOException {
+
+        private CorruptedDataException(String message) {
+            super(message);
+        }
+    }
+
+    private static class CompressedSection {
+
+        private static final CompressedSection EMPTY = new CompressedSection(new byte[0], 0, 0);
+
+        private final byte[] data;
+        private final int length;
+        private final int uncompressedLength;
+
+        private CompressedSection(byte[] data, int length, int uncompressedLength) {
+            this.data = data;
+            this.length = length;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
 }
@@ -3,31 +3,59 @@ package com.grinderwolf.swm.plugin.loaders.file;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.loaders.WorldDataWriter;
 import com.grinderwolf.swm.plugin.log.Logging;
 import org.apache.commons.io.FileUtils;
 import org.bukkit.Bukkit;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Loader that stores every world in its own file. World files are read by mapping
+ * them into memory, so they're never copied into the heap as a whole, and worlds
+ * shared by several servers on the same machine, like templates, are only kept
+ * once in the page cache. Open files are kept in a cache limited to {@code
+ * maxOpenFiles} entries, closing the least recently used ones first. Files of
+ * worlds loaded for writing, files holding a world lock and files being saved
+ * are never closed by the cache.
+ *
+ * Worlds are saved into a temporary file that then replaces the world file, so
+ * a file that's mapped by this or any other server is never modified in place.
+ */
 public class FileLoader implements SlimeLoader {
 
     private static final FilenameFilter WORLD_FILE_FILTER = (dir, name) -> name.endsWith(".slime");
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
 
-    private final Map<String, RandomAccessFile> worldFiles = Collections.synchronizedMap(new HashMap<>());
+    // Ordered from the least recently used file to the most recently used one
+    private final Map<String, WorldFile> worldFiles = new LinkedHashMap<>(16, 0.75F, true);
     private final File worldDir;
+    private final int maxOpenFiles;
 
     public FileLoader(File worldDir) {
+        this(worldDir, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    public FileLoader(File worldDir, int maxOpenFiles) {
         this.worldDir = worldDir;
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
 
         if (worldDir.exists() && !worldDir.isDirectory()) {
             Logging.warning("A file named '" + worldDir.getName() + "' has been deleted, as this is the name used for the worlds directory.");
@@ -39,38 +67,85 @@ public class FileLoader implements SlimeLoader {
 
     @Override
     public byte[] loadWorld(String worldName, boolean readOnly) throws UnknownWorldException, IOException, WorldInUseException {
+        ByteBuffer buffer = loadWorldBuffer(worldName, readOnly);
+        byte[] serializedWorld = new byte[buffer.remaining()];
+        buffer.get(serializedWorld);
+
+        return serializedWorld;
+    }
+
+    @Override
+    public ByteBuffer loadWorldBuffer(String worldName, boolean readOnly) throws UnknownWorldException, IOException, WorldInUseException {
         if (!worldExists(worldName)) {
             throw new UnknownWorldException(worldName);
         }
 
-        RandomAccessFile file = worldFiles.computeIfAbsent(worldName, (world) -> {
+        // Mapped while holding the lock, so the channel can't get closed or replaced in the meantime
+        synchronized (worldFiles) {
+            WorldFile file = getWorldFile(worldName);
 
-            try {
-                return new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
-            } catch (FileNotFoundException ex) {
-                return null; // This is never going to happen as we've just checked if the world exists
+            if (!readOnly) {
+                // Kept open until the world gets unlocked
+                file.writable = true;
             }
 
-        });
+            long length = file.channel.size();
 
-        if(!readOnly) {
-            if(file != null && file.getChannel().isOpen()) {
-                System.out.print("World is unlocked");
+            if (length > Integer.MAX_VALUE) {
+                throw new IndexOutOfBoundsException("World is too big!");
             }
-        }
 
-        if(file != null && file.length() > Integer.MAX_VALUE) {
-            throw new IndexOutOfBoundsException("World is too big!");
+            // The mapping stays valid even after the file gets closed by the cache or replaced by a save
+            return file.channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
         }
+    }
+
+    private WorldFile getWorldFile(String worldName) throws IOException {
+        synchronized (worldFiles) {
+            WorldFile file = worldFiles.get(worldName);
+
+            if (file != null && !file.channel.isOpen()) {
+                worldFiles.remove(worldName);
+                file = null;
+            }
+
+            if (file == null) {
+                file = new WorldFile(openWorldChannel(worldName));
+                worldFiles.put(worldName, file);
+                closeUnusedFiles(file);
+            }
 
-        byte[] serializedWorld = new byte[0];
-        if(file != null) {
-            serializedWorld = new byte[(int) file.length()];
-            file.seek(0); // Make sure we're at the start of the file
-            file.readFully(serializedWorld);
+            return file;
         }
+    }
 
-        return serializedWorld;
+    private FileChannel openWorldChannel(String worldName) throws IOException {
+        return FileChannel.open(getWorldPath(worldName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path getWorldPath(String worldName) {
+        return new File(worldDir, worldName + ".slime").toPath();
+    }
+
+    // Has to be called while holding the worldFiles lock. The given file is never closed, as it's about to be used
+    private void closeUnusedFiles(WorldFile usedFile) {
+        Iterator<WorldFile> iterator = worldFiles.values().iterator();
+        int openFiles = worldFiles.size();
+
+        while (openFiles > maxOpenFiles && iterator.hasNext()) {
+            WorldFile file = iterator.next();
+
+            if (file != usedFile && !file.isInUse()) {
+                iterator.remove();
+                openFiles--;
+
+                try {
+                    file.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
     }
 
     @Override
@@ -91,29 +166,70 @@ public class FileLoader implements SlimeLoader {
 
     @Override
     public void saveWorld(String worldName, byte[] serializedWorld, boolean lock) throws IOException {
-        RandomAccessFile worldFile = worldFiles.get(worldName);
-        boolean tempFile = worldFile == null;
+        saveWorld(worldName, (outStream) -> outStream.write(serializedWorld), lock);
+    }
 
-        if (tempFile) {
-            worldFile = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
+    @Override
+    public void saveWorld(String worldName, WorldDataWriter writer, boolean lock) throws IOException {
+        WorldFile worldFile;
+
+        synchronized (worldFiles) {
+            worldFile = getWorldFile(worldName);
+            worldFile.saves++;
         }
 
-        worldFile.seek(0); // Make sure we're at the start of the file
-        worldFile.setLength(0); // Delete old data
-        worldFile.write(serializedWorld);
+        try {
+            // Saves of the same world share their temporary file, so they can't run at the same time
+            synchronized (worldFile) {
+                Path tempPath = new File(worldDir, worldName + ".slime.tmp").toPath();
 
-        if (lock) {
-            FileChannel channel = worldFile.getChannel();
+                try {
+                    try (OutputStream outStream = new BufferedOutputStream(Files.newOutputStream(tempPath), 65536)) {
+                        writer.write(outStream);
+                    }
 
-            try {
-                channel.tryLock();
-            } catch (OverlappingFileLockException ignored) {
+                    replaceWorldFile(tempPath, getWorldPath(worldName));
+                } finally {
+                    Files.deleteIfExists(tempPath);
+                }
+
+                // The old channel still points to the replaced file, so it has to be reopened
+                FileChannel oldChannel;
+
+                synchronized (worldFiles) {
+                    oldChannel = worldFile.channel;
+                    worldFile.channel = openWorldChannel(worldName);
+
+                    if (worldFiles.get(worldName) != worldFile) {
+                        // The world got unlocked while it was being saved
+                        worldFile.channel.close();
+                    } else if (worldFile.lock != null || lock) {
+                        worldFile.lock = null;
 
+                        try {
+                            worldFile.lock = worldFile.channel.tryLock();
+                        } catch (OverlappingFileLockException ignored) {
+
+                        }
+                    }
+                }
+
+                // Closing the channel also releases the lock held on the replaced file
+                oldChannel.close();
+            }
+        } finally {
+            synchronized (worldFiles) {
+                worldFile.saves--;
+                closeUnusedFiles(null);
             }
         }
+    }
 
-        if (tempFile) {
-            worldFile.close();
+    private static void replaceWorldFile(Path tempPath, Path worldPath) throws IOException {
+        try {
+            Files.move(tempPath, worldPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempPath, worldPath, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -123,11 +239,10 @@ public class FileLoader implements SlimeLoader {
             throw new UnknownWorldException(worldName);
         }
 
-        RandomAccessFile file = worldFiles.remove(worldName);
+        synchronized (worldFiles) {
+            WorldFile file = worldFiles.remove(worldName);
 
-        if(file != null) {
-            FileChannel channel = file.getChannel();
-            if(channel.isOpen()) {
+            if (file != null) {
                 file.close();
             }
         }
@@ -135,17 +250,16 @@ public class FileLoader implements SlimeLoader {
 
     @Override
     public boolean isWorldLocked(String worldName) throws IOException {
-        RandomAccessFile file = worldFiles.get(worldName);
+        synchronized (worldFiles) {
+            WorldFile file = worldFiles.get(worldName);
 
-        if (file == null) {
-            file = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
+            if (file != null) {
+                return !file.channel.isOpen();
+            }
         }
 
-        if(file.getChannel().isOpen()) {
-            file.close();
-        }else{
-            return true;
-        }
+        new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw").close();
+
         return false;
     }
 
@@ -156,23 +270,34 @@ public class FileLoader implements SlimeLoader {
         }else {
             try {
                 System.out.println("Deleting world.. " + worldName + ".");
-                RandomAccessFile randomAccessFile = worldFiles.get(worldName);
-                unlockWorld(worldName);
+                unlockWorld(worldName); // Also closes the world file
                 FileUtils.forceDelete(new File(worldDir, worldName + ".slime"));
-                if(randomAccessFile != null) {
-                    System.out.print("Attempting to delete worldData " + worldName + ".");
-
-                    randomAccessFile.seek(0); // Make sure we're at the start of the file
-                    randomAccessFile.setLength(0); // Delete old data
-                    randomAccessFile.write(null);
-                    randomAccessFile.close();
-
-                    worldFiles.remove(worldName);
-                }
                 System.out.println("World.. " + worldName + " deleted.");
             } catch(IOException e) {
                 e.printStackTrace();
             }
         }
     }
+
+    private static final class WorldFile {
+
+        // These are only accessed while holding the worldFiles lock
+        private FileChannel channel;
+        private FileLock lock;
+        private boolean writable;
+        private int saves;
+
+        private WorldFile(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private boolean isInUse() {
+            return writable || lock != null || saves > 0;
+        }
+
+        // Closing the channel also releases the lock
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
 }
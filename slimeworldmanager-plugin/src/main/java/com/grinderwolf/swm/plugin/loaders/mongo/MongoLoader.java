@@ -3,6 +3,7 @@ package com.grinderwolf.swm.plugin.loaders.mongo;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
+import com.grinderwolf.swm.api.loaders.WorldDataWriter;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.loaders.UpdatableLoader;
@@ -16,6 +17,7 @@ import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSUploadStream;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
@@ -24,7 +26,6 @@ import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -187,6 +188,11 @@ public class MongoLoader extends UpdatableLoader {
 
     @Override
     public void saveWorld(String worldName, byte[] serializedWorld, boolean lock) throws IOException {
+        saveWorld(worldName, (outStream) -> outStream.write(serializedWorld), lock);
+    }
+
+    @Override
+    public void saveWorld(String worldName, WorldDataWriter writer, boolean lock) throws IOException {
         try {
             MongoDatabase mongoDatabase = client.getDatabase(database);
             GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection);
@@ -196,7 +202,16 @@ public class MongoLoader extends UpdatableLoader {
                 bucket.rename(oldFile.getObjectId(), worldName + "_backup");
             }
 
-            bucket.uploadFromStream(worldName, new ByteArrayInputStream(serializedWorld));
+            GridFSUploadStream uploadStream = bucket.openUploadStream(worldName);
+
+            try {
+                writer.write(uploadStream);
+            } catch (IOException | RuntimeException ex) {
+                uploadStream.abort();
+                throw ex;
+            }
+
+            uploadStream.close();
 
             MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
             Document worldDoc = mongoCollection.find(Filters.eq("name", worldName)).first();
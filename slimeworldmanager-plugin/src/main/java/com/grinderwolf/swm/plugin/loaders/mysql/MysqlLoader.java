@@ -3,6 +3,8 @@ package com.grinderwolf.swm.plugin.loaders.mysql;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
+import com.grinderwolf.swm.api.loaders.WorldDataWriter;
+import com.grinderwolf.swm.nms.utils.FastByteArrayOutputStream;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.loaders.UpdatableLoader;
@@ -10,6 +12,7 @@ import com.grinderwolf.swm.plugin.log.Logging;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -213,11 +216,24 @@ public class MysqlLoader extends UpdatableLoader {
 
     @Override
     public void saveWorld(String worldName, byte[] serializedWorld, boolean lock) throws IOException {
+        saveWorld(worldName, serializedWorld, serializedWorld.length, lock);
+    }
+
+    @Override
+    public void saveWorld(String worldName, WorldDataWriter writer, boolean lock) throws IOException {
+        FastByteArrayOutputStream outStream = new FastByteArrayOutputStream(65536);
+        writer.write(outStream);
+
+        // Hand the backing array over as it is, instead of copying it into a new one
+        saveWorld(worldName, outStream.getBuffer(), outStream.size(), lock);
+    }
+
+    private void saveWorld(String worldName, byte[] serializedWorld, int length, boolean lock) throws IOException {
         try (Connection con = source.getConnection();
              PreparedStatement statement = con.prepareStatement(UPDATE_WORLD_QUERY)) {
             statement.setString(1, worldName);
-            statement.setBytes(2, serializedWorld);
-            statement.setBytes(3, serializedWorld);
+            statement.setBinaryStream(2, new ByteArrayInputStream(serializedWorld, 0, length), length);
+            statement.setBinaryStream(3, new ByteArrayInputStream(serializedWorld, 0, length), length);
             statement.executeUpdate();
 
             if (lock) {
@@ -3,11 +3,15 @@ package com.grinderwolf.swm.plugin.loaders.redis;
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.exceptions.WorldInUseException;
 import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.loaders.WorldDataWriter;
+import com.grinderwolf.swm.nms.utils.FastByteArrayOutputStream;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
+import com.grinderwolf.swm.plugin.loaders.redis.util.StringByteBufferCodec;
 import com.grinderwolf.swm.plugin.loaders.redis.util.StringByteCodec;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.api.sync.RedisCommands;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public class RedisLoader implements SlimeLoader {
@@ -18,13 +22,19 @@ public class RedisLoader implements SlimeLoader {
     private static final byte FALSE = 0x0;
 
     public RedisLoader(DatasourcesConfig.RedisConfig config) {
-        this.connection = RedisClient
-            .create(config.getUri())
+        RedisClient client = RedisClient.create(config.getUri());
+
+        this.connection = client
             .connect(StringByteCodec.INSTANCE)
             .sync();
+        this.bufferConnection = client
+            .connect(StringByteBufferCodec.INSTANCE)
+            .sync();
     }
 
     private final RedisCommands<String, byte[]> connection;
+    // Used to store world data without copying it into an exactly sized array first
+    private final RedisCommands<String, ByteBuffer> bufferConnection;
 
     @Override
     public byte[] loadWorld(String name, boolean readOnly) throws UnknownWorldException, WorldInUseException, IOException {
@@ -61,6 +71,15 @@ public class RedisLoader implements SlimeLoader {
         connection.set(WORLD_LOCK_PREFIX + name, new byte[]{lock ? TRUE : FALSE});
     }
 
+    @Override
+    public void saveWorld(String name, WorldDataWriter writer, boolean lock) throws IOException {
+        FastByteArrayOutputStream outStream = new FastByteArrayOutputStream(65536);
+        writer.write(outStream);
+
+        bufferConnection.set(WORLD_DATA_PREFIX + name, ByteBuffer.wrap(outStream.getBuffer(), 0, outStream.size()));
+        connection.set(WORLD_LOCK_PREFIX + name, new byte[]{lock ? TRUE : FALSE});
+    }
+
     @Override
     public void unlockWorld(String name) throws UnknownWorldException, IOException {
         boolean exists = this.worldExists(name);
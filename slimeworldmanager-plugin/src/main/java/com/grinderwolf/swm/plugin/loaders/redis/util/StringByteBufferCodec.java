@@ -0,0 +1,42 @@
+package com.grinderwolf.swm.plugin.loaders.redis.util;
+
+import io.lettuce.core.codec.RedisCodec;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class StringByteBufferCodec implements RedisCodec<String, ByteBuffer> {
+
+    public static final StringByteBufferCodec INSTANCE = new StringByteBufferCodec();
+    private static final ByteBuffer EMPTY = ByteBuffer.wrap(new byte[0]);
+    private final Charset charset = StandardCharsets.UTF_8;
+
+    @Override
+    public String decodeKey(final ByteBuffer bytes) {
+        return charset.decode(bytes).toString();
+    }
+
+    @Override
+    public ByteBuffer decodeValue(final ByteBuffer bytes) {
+        // Lettuce reuses the buffer it hands over, so we've got to copy it
+        final ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+        copy.put(bytes);
+        copy.flip();
+        return copy;
+    }
+
+    @Override
+    public ByteBuffer encodeKey(final String key) {
+        return charset.encode(key);
+    }
+
+    @Override
+    public ByteBuffer encodeValue(final ByteBuffer value) {
+        if (value == null) {
+            return EMPTY.duplicate();
+        }
+
+        return value.duplicate();
+    }
+
+}
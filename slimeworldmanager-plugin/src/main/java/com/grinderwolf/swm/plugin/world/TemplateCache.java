@@ -0,0 +1,334 @@
+package com.grinderwolf.swm.plugin.world;
+
+import com.grinderwolf.swm.api.exceptions.CorruptedWorldException;
+import com.grinderwolf.swm.api.exceptions.NewerFormatException;
+import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
+import com.grinderwolf.swm.api.exceptions.WorldInUseException;
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.world.properties.SlimeProperties;
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.nms.CraftSlimeWorld;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps deserialized read-only worlds in memory, so loading the same template over and over
+ * again doesn't mean fetching and decoding its data file every time. Templates are evicted,
+ * least recently used first, once their estimated size goes over the memory budget. Concurrent
+ * requests for a template that's not cached yet share the same load. Templates are kept until
+ * they get evicted or invalidated. SWM invalidates a template whenever it writes the world,
+ * including saves of a writable copy of it, but data sources can't tell when a world has
+ * changed without fetching it, so worlds modified outside of SWM have to be invalidated by hand.
+ * For that reason, the cache is disabled unless a memory budget is set in the config file.
+ *
+ * Templates are decoded with the properties that change how a world is decoded, like
+ * {@link SlimeProperties#LAZY_CHUNKS}, and cached separately for each value of them.
+ */
+public class TemplateCache {
+
+    private final long maxBytes;
+
+    // Access ordered, so the least recently used template always comes first
+    private final Map<Key, Entry> templates = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<Key, CompletableFuture<CraftSlimeWorld>> loadingTemplates = new HashMap<>();
+    private long usedBytes;
+
+    private long hits;
+    private long misses;
+    private long sharedLoads;
+    private long evictions;
+
+    /**
+     * Creates a template cache.
+     *
+     * @param maxBytes Max estimated size, in bytes, of the cached templates, or 0 to not cache any template.
+     */
+    public TemplateCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Returns the properties of the given map a template has to be decoded with. Every other
+     * property can be applied to copies of the template instead.
+     *
+     * @param propertyMap The properties requested by the caller.
+     * @return A map containing only the properties that change how the template is decoded.
+     */
+    public static SlimePropertyMap getDecodeProperties(SlimePropertyMap propertyMap) {
+        SlimePropertyMap decodeProperties = new SlimePropertyMap();
+        Boolean lazyChunks = getLazyChunks(propertyMap);
+
+        if (lazyChunks != null) {
+            decodeProperties.setValue(SlimeProperties.LAZY_CHUNKS, lazyChunks);
+        }
+
+        return decodeProperties;
+    }
+
+    // Returns null if the property isn't set, so the one stored in the world is used instead
+    private static Boolean getLazyChunks(SlimePropertyMap propertyMap) {
+        if (!propertyMap.toCompound().getValue().containsKey(SlimeProperties.LAZY_CHUNKS.getNbtName())) {
+            return null;
+        }
+
+        return propertyMap.getValue(SlimeProperties.LAZY_CHUNKS);
+    }
+
+    /**
+     * Returns a cached template, loading it if it's not cached yet. The returned world
+     * is shared, so it must never be modified or generated. Copy it instead.
+     *
+     * @param loader           The loader the template is stored in.
+     * @param worldName        The name of the template.
+     * @param decodeProperties The properties the template is decoded with, as returned by {@link #getDecodeProperties(SlimePropertyMap)}.
+     * @param templateLoader   Loads the template if it's not cached.
+     * @return The template.
+     */
+    public CraftSlimeWorld get(SlimeLoader loader, String worldName, SlimePropertyMap decodeProperties, TemplateLoader templateLoader)
+            throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException, WorldInUseException {
+        if (maxBytes <= 0) {
+            return templateLoader.load();
+        }
+
+        Key key = new Key(loader, worldName, getLazyChunks(decodeProperties));
+        CompletableFuture<CraftSlimeWorld> loading = new CompletableFuture<>();
+        CompletableFuture<CraftSlimeWorld> future = lookup(key, loading);
+
+        if (future != loading) {
+            return await(future);
+        }
+
+        CraftSlimeWorld template;
+
+        try {
+            template = templateLoader.load();
+        } catch (Exception ex) {
+            fail(key, loading, ex);
+            throw ex;
+        }
+
+        complete(key, loading, template);
+
+        return template;
+    }
+
+    /**
+     * Returns a cached template, loading it asynchronously if it's not cached yet. The
+     * returned world is shared, so it must never be modified or generated. Copy it instead.
+     *
+     * @param loader           The loader the template is stored in.
+     * @param worldName        The name of the template.
+     * @param decodeProperties The properties the template is decoded with, as returned by {@link #getDecodeProperties(SlimePropertyMap)}.
+     * @param templateLoader   Starts loading the template if it's not cached.
+     * @return A future completed with the template.
+     */
+    public CompletableFuture<CraftSlimeWorld> getAsync(SlimeLoader loader, String worldName, SlimePropertyMap decodeProperties,
+                                                       Supplier<CompletableFuture<CraftSlimeWorld>> templateLoader) {
+        if (maxBytes <= 0) {
+            return templateLoader.get();
+        }
+
+        Key key = new Key(loader, worldName, getLazyChunks(decodeProperties));
+        CompletableFuture<CraftSlimeWorld> loading = new CompletableFuture<>();
+        CompletableFuture<CraftSlimeWorld> future = lookup(key, loading);
+
+        if (future == loading) {
+            templateLoader.get().whenComplete((template, ex) -> {
+                if (ex != null) {
+                    fail(key, loading, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                } else {
+                    complete(key, loading, template);
+                }
+            });
+        }
+
+        return future;
+    }
+
+    // Returns the future the template is going to be completed through. If that's the given one, the caller has to load the template
+    private synchronized CompletableFuture<CraftSlimeWorld> lookup(Key key, CompletableFuture<CraftSlimeWorld> loading) {
+        Entry entry = templates.get(key);
+
+        if (entry != null) {
+            hits++;
+
+            return CompletableFuture.completedFuture(entry.template);
+        }
+
+        CompletableFuture<CraftSlimeWorld> future = loadingTemplates.get(key);
+
+        if (future != null) {
+            sharedLoads++;
+
+            return future;
+        }
+
+        misses++;
+        loadingTemplates.put(key, loading);
+
+        return loading;
+    }
+
+    private void complete(Key key, CompletableFuture<CraftSlimeWorld> future, CraftSlimeWorld template) {
+        long size = template.estimateSize();
+
+        synchronized (this) {
+            // The template isn't cached if it's been invalidated while it was being loaded
+            if (loadingTemplates.remove(key, future) && size <= maxBytes) {
+                Entry previous = templates.put(key, new Entry(template, size));
+
+                if (previous != null) {
+                    usedBytes -= previous.size;
+                }
+
+                usedBytes += size;
+                evict();
+            }
+        }
+
+        future.complete(template);
+    }
+
+    private void fail(Key key, CompletableFuture<CraftSlimeWorld> future, Throwable ex) {
+        synchronized (this) {
+            loadingTemplates.remove(key, future);
+        }
+
+        future.completeExceptionally(ex);
+    }
+
+    private static CraftSlimeWorld await(CompletableFuture<CraftSlimeWorld> future) throws UnknownWorldException,
+            IOException, CorruptedWorldException, NewerFormatException, WorldInUseException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof UnknownWorldException) {
+                throw (UnknownWorldException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof CorruptedWorldException) {
+                throw (CorruptedWorldException) cause;
+            } else if (cause instanceof NewerFormatException) {
+                throw (NewerFormatException) cause;
+            } else if (cause instanceof WorldInUseException) {
+                throw (WorldInUseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw ex;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = templates.values().iterator();
+
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes a template from the cache, so it's loaded again from its
+     * data source the next time it's requested.
+     *
+     * @param loader    The loader the template is stored in.
+     * @param worldName The name of the template.
+     */
+    public synchronized void invalidate(SlimeLoader loader, String worldName) {
+        Iterator<Map.Entry<Key, Entry>> iterator = templates.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+
+            if (entry.getKey().isTemplate(loader, worldName)) {
+                usedBytes -= entry.getValue().size;
+                iterator.remove();
+            }
+        }
+
+        loadingTemplates.keySet().removeIf(key -> key.isTemplate(loader, worldName));
+    }
+
+    /**
+     * Removes every template from the cache.
+     */
+    public synchronized void invalidateAll() {
+        templates.clear();
+        loadingTemplates.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int getCachedTemplates() {
+        return templates.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getSharedLoads() {
+        return sharedLoads;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @FunctionalInterface
+    public interface TemplateLoader {
+
+        CraftSlimeWorld load() throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException, WorldInUseException;
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Key {
+
+        private final SlimeLoader loader;
+        private final String worldName;
+        private final Boolean lazyChunks;
+
+        private boolean isTemplate(SlimeLoader loader, String worldName) {
+            return this.loader.equals(loader) && this.worldName.equals(worldName);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        private final CraftSlimeWorld template;
+        private final long size;
+    }
+}
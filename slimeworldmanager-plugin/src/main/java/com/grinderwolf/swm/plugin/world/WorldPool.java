@@ -0,0 +1,260 @@
+package com.grinderwolf.swm.plugin.world;
+
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.api.world.SlimeWorldPool;
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.log.Logging;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps generated copies of a template world ready to be claimed. Copies are loaded
+ * and cloned asynchronously, and then generated on the main thread by the
+ * {@link WorldPoolManager}, which limits how many of them get generated every tick.
+ */
+public class WorldPool implements SlimeWorldPool {
+
+    // Time to wait before trying to prepare new worlds again after failing to do so
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toNanos(10);
+
+    private static final AtomicLong createdWorlds = new AtomicLong();
+
+    private final WorldPoolManager manager;
+
+    @Getter
+    private final SlimeLoader loader;
+    @Getter
+    private final String templateName;
+    private final SlimePropertyMap propertyMap;
+    @Getter
+    private final int size;
+    private final long idleTimeout;
+
+    // Generated worlds, oldest first
+    private final Deque<SlimeWorld> readyWorlds = new ArrayDeque<>();
+    // Copies loaded by async tasks, waiting to be generated
+    private final Queue<PreparedWorld> preparedWorlds = new ConcurrentLinkedQueue<>();
+    // Worlds that have been requested but not generated yet
+    private int pendingWorlds;
+
+    private long lastClaim = System.nanoTime();
+    private long nextRefill = lastClaim;
+    private volatile boolean closed;
+
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long refills;
+    private volatile long totalRefillTime;
+    private volatile long maxRefillTime;
+
+    WorldPool(WorldPoolManager manager, SlimeLoader loader, String templateName, SlimePropertyMap propertyMap, int size, long idleTimeout) {
+        this.manager = manager;
+        this.loader = loader;
+        this.templateName = templateName;
+        this.propertyMap = propertyMap;
+        this.size = size;
+        this.idleTimeout = TimeUnit.SECONDS.toNanos(idleTimeout);
+    }
+
+    @Override
+    public int getReadyWorlds() {
+        return readyWorlds.size();
+    }
+
+    @Override
+    public SlimeWorld claim() {
+        if (!Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Worlds can only be claimed from the main thread.");
+        }
+
+        lastClaim = System.nanoTime();
+        SlimeWorld world;
+
+        // Skip worlds that have been unloaded while waiting in the pool
+        do {
+            world = readyWorlds.poll();
+        } while (world != null && Bukkit.getWorld(world.getName()) == null);
+
+        if (world == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return world;
+    }
+
+    @Override
+    public long getHits() {
+        return hits;
+    }
+
+    @Override
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits;
+        long claims = hitCount + misses;
+
+        return claims == 0 ? 0.0D : (double) hitCount / claims;
+    }
+
+    @Override
+    public long getAverageRefillTime() {
+        long refillCount = refills;
+
+        return refillCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRefillTime / refillCount);
+    }
+
+    @Override
+    public long getMaxRefillTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRefillTime);
+    }
+
+    @Override
+    public void close() {
+        if (!Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Pools can only be closed from the main thread.");
+        }
+
+        closed = true;
+        manager.removePool(this);
+        unloadReadyWorlds();
+    }
+
+    private boolean isIdle(long now) {
+        return idleTimeout > 0 && now - lastClaim > idleTimeout;
+    }
+
+    /**
+     * Requests as many new worlds as the pool is missing, or unloads
+     * the ready ones if the pool hasn't been used for a while.
+     *
+     * @param now The current value of {@link System#nanoTime()}.
+     */
+    void refill(long now) {
+        if (closed) {
+            return;
+        }
+
+        if (isIdle(now)) {
+            if (!readyWorlds.isEmpty()) {
+                Logging.info("Unloading " + readyWorlds.size() + " pooled copies of world " + templateName + ", as none of them has been claimed lately.");
+                unloadReadyWorlds();
+            }
+
+            return;
+        }
+
+        if (now - nextRefill < 0) {
+            return;
+        }
+
+        while (readyWorlds.size() + pendingWorlds < size) {
+            pendingWorlds++;
+            prepareWorld(now);
+        }
+    }
+
+    private void prepareWorld(long requestTime) {
+        SWMPlugin.getInstance().loadWorldAsync(loader, templateName, true, propertyMap)
+                .thenApply(template -> template.clone(nextWorldName()))
+                .whenComplete((world, ex) -> {
+                    if (ex != null) {
+                        Logging.error("Failed to prepare a pooled copy of world " + templateName + ":");
+                        ex.printStackTrace();
+                    }
+
+                    preparedWorlds.add(new PreparedWorld(world, requestTime));
+                });
+    }
+
+    private String nextWorldName() {
+        String worldName;
+
+        do {
+            worldName = templateName + "-" + createdWorlds.incrementAndGet();
+        } while (Bukkit.getWorld(worldName) != null);
+
+        return worldName;
+    }
+
+    /**
+     * Generates the next world that has been prepared, if there's any.
+     *
+     * @param now The current value of {@link System#nanoTime()}.
+     * @return Whether or not a world has been generated.
+     */
+    boolean generateNext(long now) {
+        PreparedWorld preparedWorld = preparedWorlds.poll();
+
+        if (preparedWorld == null) {
+            return false;
+        }
+
+        pendingWorlds--;
+
+        if (preparedWorld.world == null) {
+            nextRefill = now + RETRY_DELAY;
+
+            return false;
+        }
+
+        // Worlds that are no longer needed are dropped before they're generated
+        if (closed || isIdle(now)) {
+            return false;
+        }
+
+        try {
+            SWMPlugin.getInstance().generateWorld(preparedWorld.world);
+        } catch (IllegalArgumentException ex) {
+            Logging.error("Failed to generate a pooled copy of world " + templateName + ": " + ex.getMessage());
+            nextRefill = now + RETRY_DELAY;
+
+            return false;
+        }
+
+        long refillTime = System.nanoTime() - preparedWorld.requestTime;
+        refills++;
+        totalRefillTime += refillTime;
+        maxRefillTime = Math.max(maxRefillTime, refillTime);
+
+        readyWorlds.add(preparedWorld.world);
+
+        return true;
+    }
+
+    private void unloadReadyWorlds() {
+        for (SlimeWorld world : readyWorlds) {
+            World bukkitWorld = Bukkit.getWorld(world.getName());
+
+            if (bukkitWorld != null) {
+                Bukkit.unloadWorld(bukkitWorld, false);
+            }
+        }
+
+        readyWorlds.clear();
+    }
+
+    @RequiredArgsConstructor
+    private static class PreparedWorld {
+
+        // Null if the world could not be prepared
+        private final SlimeWorld world;
+        private final long requestTime;
+    }
+}
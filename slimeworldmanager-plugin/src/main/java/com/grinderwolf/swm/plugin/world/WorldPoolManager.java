@@ -0,0 +1,111 @@
+package com.grinderwolf.swm.plugin.world;
+
+import com.grinderwolf.swm.api.loaders.SlimeLoader;
+import com.grinderwolf.swm.api.world.properties.SlimePropertyMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of every world pool, refilling them every tick. Pooled worlds are
+ * generated on the main thread, so only a limited amount of them get generated
+ * every tick, taking turns between pools, to keep each tick short.
+ */
+public class WorldPoolManager {
+
+    private final int maxPoolSize;
+    private final int maxPooledWorlds;
+    private final int generationsPerTick;
+
+    private final List<WorldPool> pools = new CopyOnWriteArrayList<>();
+    private int nextPool;
+
+    /**
+     * Creates a pool manager.
+     *
+     * @param maxPoolSize        Max amount of worlds a single pool can keep ready.
+     * @param maxPooledWorlds    Max amount of worlds all pools together can keep ready.
+     * @param generationsPerTick Max amount of pooled worlds generated every tick.
+     */
+    public WorldPoolManager(int maxPoolSize, int maxPooledWorlds, int generationsPerTick) {
+        this.maxPoolSize = maxPoolSize;
+        this.maxPooledWorlds = maxPooledWorlds;
+        this.generationsPerTick = Math.max(1, generationsPerTick);
+    }
+
+    public synchronized WorldPool createPool(SlimeLoader loader, String templateName, SlimePropertyMap propertyMap, int size, long idleTimeout) {
+        if (size < 1 || size > maxPoolSize) {
+            throw new IllegalArgumentException("Pool size must be between 1 and " + maxPoolSize + ".");
+        }
+
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout cannot be negative.");
+        }
+
+        int pooledWorlds = size;
+
+        for (WorldPool pool : pools) {
+            if (pool.getLoader().equals(loader) && pool.getTemplateName().equals(templateName)) {
+                throw new IllegalArgumentException("There's already a pool for world " + templateName + ".");
+            }
+
+            pooledWorlds += pool.getSize();
+        }
+
+        if (pooledWorlds > maxPooledWorlds) {
+            throw new IllegalArgumentException("Pools cannot keep more than " + maxPooledWorlds + " worlds in total.");
+        }
+
+        WorldPool pool = new WorldPool(this, loader, templateName, propertyMap, size, idleTimeout);
+        pools.add(pool);
+
+        return pool;
+    }
+
+    void removePool(WorldPool pool) {
+        pools.remove(pool);
+    }
+
+    public List<WorldPool> getPools() {
+        return Collections.unmodifiableList(new ArrayList<>(pools));
+    }
+
+    /**
+     * Refills every pool and generates the next prepared worlds. Has to be called every tick, from the main thread.
+     */
+    public void tick() {
+        if (this.pools.isEmpty()) {
+            return;
+        }
+
+        // Pools could be removed in the meantime
+        List<WorldPool> pools = new ArrayList<>(this.pools);
+
+        long now = System.nanoTime();
+
+        for (WorldPool pool : pools) {
+            pool.refill(now);
+        }
+
+        // Pools take turns, starting from a different one every tick, so none of them gets starved
+        int generations = 0;
+        boolean generated = true;
+
+        while (generated && generations < generationsPerTick) {
+            generated = false;
+
+            for (int i = 0; i < pools.size() && generations < generationsPerTick; i++) {
+                WorldPool pool = pools.get((nextPool + i) % pools.size());
+
+                if (pool.generateNext(now)) {
+                    generations++;
+                    generated = true;
+                }
+            }
+        }
+
+        nextPool = (nextPool + 1) % pools.size();
+    }
+}
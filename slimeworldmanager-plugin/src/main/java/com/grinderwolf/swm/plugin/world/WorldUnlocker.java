@@ -2,6 +2,7 @@ package com.grinderwolf.swm.plugin.world;
 
 import com.grinderwolf.swm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.api.world.SlimeWorld;
+import com.grinderwolf.swm.nms.AutosaveScheduler;
 import com.grinderwolf.swm.plugin.SWMPlugin;
 import com.grinderwolf.swm.plugin.log.Logging;
 import org.bukkit.Bukkit;
@@ -19,6 +20,7 @@ public class WorldUnlocker implements Listener {
         SlimeWorld world = SWMPlugin.getInstance().getNms().getSlimeWorld(event.getWorld());
 
         if (world != null) {
+            AutosaveScheduler.unregister(world);
             Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> unlockWorld(world));
         }
     }
@@ -60,10 +60,10 @@ public class WorldImporter {
             throw new InvalidWorldException(worldDir);
         }
 
-        Map<Long, SlimeChunk> chunks = new HashMap<>();
+        List<SlimeChunk> chunks = new ArrayList<>();
 
         for (File file : regionDir.listFiles((dir, name) -> name.endsWith(".mca"))) {
-            chunks.putAll(loadChunks(file, worldVersion).stream().collect(Collectors.toMap((chunk) -> ((long) chunk.getZ()) * Integer.MAX_VALUE + ((long) chunk.getX()), (chunk) -> chunk)));
+            chunks.addAll(loadChunks(file, worldVersion));
         }
 
         if (chunks.isEmpty()) {
@@ -100,7 +100,7 @@ public class WorldImporter {
         propertyMap.setValue(SlimeProperties.SPAWN_Y, data.getSpawnY());
         propertyMap.setValue(SlimeProperties.SPAWN_Z, data.getSpawnZ());
 
-        return new CraftSlimeWorld(null, worldDir.getName(), chunks, new CompoundTag("", extraData),
+        return new CraftSlimeWorld(null, worldDir.getName(), new ChunkIndex(chunks), new CompoundTag("", extraData),
                 maps, worldVersion, propertyMap, false, true);
     }
 